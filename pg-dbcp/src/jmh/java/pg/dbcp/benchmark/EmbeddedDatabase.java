@@ -0,0 +1,108 @@
+package pg.dbcp.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import pg.dbcp.store.TodoDataStore;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * A throwaway local Postgres server with the todos schema, so that benchmarks need neither a network
+ * nor an installed database.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class EmbeddedDatabase implements Closeable {
+    private final EmbeddedPostgres postgres;
+    private final Properties properties;
+    private final DataSource dataSource;
+
+    public EmbeddedDatabase() throws IOException, SQLException {
+        postgres = EmbeddedPostgres.start();
+
+        properties = new Properties();
+        properties.setProperty("url", postgres.getJdbcUrl("postgres", "postgres"));
+        properties.setProperty("username", "postgres");
+        properties.setProperty("password", "");
+        properties.setProperty("driver", "org.postgresql.Driver");
+        properties.setProperty("initialConnections", "10");
+        properties.setProperty("minIdleConnections", "3");
+        properties.setProperty("maxIdleConnections", "20");
+        properties.setProperty("maxTotalConnections", "20");
+        properties.setProperty("maxWaitMillis", "2000");
+        properties.setProperty("poolPreparedStatements", "true");
+        TodoDataStore.applyEnvironmentOverrides(properties);
+        dataSource = TodoDataStore.createDataSource(properties);
+        if (dataSource == null) {
+            postgres.close();
+            throw new SQLException("Unable to connect to embedded database");
+        }
+
+        if (!TodoDataStore.migrate(dataSource)) {
+            postgres.close();
+            throw new SQLException("Unable to migrate embedded database");
+        }
+    }
+
+    public Properties getProperties() {
+        final Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public UUID[] populate(final int size) throws SQLException {
+        final String sql = "insert into todos (id, title, description, isDone) " +
+                "select md5(random()::text || i)::uuid, 'Todo ' || i, 'Description of benchmark todo number ' || i, i % 2 = 0 " +
+                "from generate_series(1, ?) as i";
+
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, size);
+                statement.executeUpdate();
+            }
+        }
+
+        execute("analyze todos");
+
+        final List<UUID> ids = new ArrayList<>(size);
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("select id from todos")) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add((UUID) resultSet.getObject(1));
+                    }
+                }
+            }
+        }
+
+        return ids.toArray(new UUID[ids.size()]);
+    }
+
+    private void execute(final String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        postgres.close();
+    }
+}
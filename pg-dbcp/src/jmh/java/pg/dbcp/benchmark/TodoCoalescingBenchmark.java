@@ -0,0 +1,107 @@
+package pg.dbcp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pg.dbcp.model.Todo;
+import pg.dbcp.repository.TodoRepository;
+import pg.dbcp.service.TodoService;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Many threads reading a small set of hot Todos, with and without coalescing, counting the queries each read costs.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+public class TodoCoalescingBenchmark {
+    private final static String CONTEXT_ID = "benchmark";
+    private final static int HOT_IDS = 16;
+
+    @Param({"false", "true"})
+    private boolean coalesceReads;
+
+    @Param({"0", "200"})
+    private long batchWindowMicros;
+
+    private EmbeddedDatabase database;
+    private TodoService todoService;
+    private UUID[] ids;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = new EmbeddedDatabase();
+        ids = Arrays.copyOf(database.populate(1000), HOT_IDS);
+
+        final TodoRepository todoRepository = new TodoRepository(countingQueries(database.getDataSource()));
+        todoRepository.batchLookupsById(batchWindowMicros, 100);
+        todoService = new TodoService(todoRepository, coalesceReads);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf("%n%.3f queries per read%n", (double) queries.sumThenReset() / Math.max(1, reads.sumThenReset()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public Todo getTodoById() {
+        reads.increment();
+        return todoService.getTodoById(CONTEXT_ID, ids[ThreadLocalRandom.current().nextInt(HOT_IDS)]);
+    }
+
+    @Benchmark
+    public List<Todo> getPendingTodos() {
+        reads.increment();
+        return todoService.getPendingTodos(CONTEXT_ID);
+    }
+
+    // Every query borrows its own connection, so borrows count queries
+    private DataSource countingQueries(final DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                queries.increment();
+            }
+            try {
+                return method.invoke(dataSource, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package pg.dbcp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pg.dbcp.model.Todo;
+import pg.dbcp.model.TodoIds;
+import pg.dbcp.repository.TodoRepository;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sustained inserts into a populated table with random and with time-ordered ids. Random ids touch a different
+ * primary key leaf on nearly every insert, while time-ordered ones all go to the rightmost leaf.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+public class TodoInsertBenchmark {
+    private final static String CONTEXT_ID = "benchmark";
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"random", "timeOrdered"})
+    private String idGenerator;
+
+    private final AtomicInteger counter = new AtomicInteger();
+    private EmbeddedDatabase database;
+    private TodoRepository todoRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        TodoIds.useTimeOrdered("timeOrdered".equals(idGenerator));
+        database = new EmbeddedDatabase();
+        database.populate(size);
+        todoRepository = new TodoRepository(database.getDataSource());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public boolean insertTodo() {
+        final int index = counter.incrementAndGet();
+        final Todo todo = new Todo();
+        todo.setTitle("Todo " + index);
+        todo.setDescription("Description of benchmark todo number " + index);
+        return todoRepository.insertTodo(CONTEXT_ID, todo);
+    }
+}
@@ -0,0 +1,146 @@
+package pg.dbcp.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pg.dbcp.model.Todo;
+import pg.dbcp.repository.CachingTodoRepository;
+import pg.dbcp.repository.TodoRepository;
+import pg.dbcp.service.TodoService;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TodoRepositoryBenchmark {
+    private final static String CONTEXT_ID = "benchmark";
+    private final static int PAGE_SIZE = 100;
+    private final static int MULTI_GET_SIZE = 16;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private EmbeddedDatabase database;
+    private TodoRepository todoRepository;
+    private TodoService todoService;
+    private UUID[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = new EmbeddedDatabase();
+        ids = database.populate(size);
+        todoRepository = cached
+                ? new CachingTodoRepository(database.getDataSource(), 10000, 60)
+                : new TodoRepository(database.getDataSource());
+        todoService = new TodoService(todoRepository);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Todo> getById() {
+        return todoRepository.getById(CONTEXT_ID, randomId());
+    }
+
+    @Benchmark
+    public Map<UUID, Todo> getByIds() {
+        final List<UUID> batch = new ArrayList<>(MULTI_GET_SIZE);
+        for (int i = 0; i < MULTI_GET_SIZE; i++) {
+            batch.add(randomId());
+        }
+        return todoRepository.getByIds(CONTEXT_ID, batch);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int streamAll(final Blackhole blackhole) {
+        return todoRepository.streamAll(CONTEXT_ID, null, 0, blackhole::consume);
+    }
+
+    @Benchmark
+    public int streamAllPage(final Blackhole blackhole) {
+        return todoRepository.streamAll(CONTEXT_ID, randomId(), PAGE_SIZE, blackhole::consume);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Todo> getPendingTodos() {
+        return todoService.getPendingTodos(CONTEXT_ID);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Todo> getCompletedTodos() {
+        return todoService.getCompletedTodos(CONTEXT_ID);
+    }
+
+    @Benchmark
+    public boolean insertAndDelete() {
+        final Todo todo = new Todo();
+        todo.setTitle("Todo " + size);
+        todoRepository.insertTodo(CONTEXT_ID, todo);
+        return todoRepository.deleteTodoById(CONTEXT_ID, todo.getId());
+    }
+
+    @Benchmark
+    public boolean update() {
+        return todoRepository.updateTodo(CONTEXT_ID, randomId(), null, null, randomDone());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public Optional<Todo> mixedRead() {
+        return todoRepository.getById(CONTEXT_ID, randomId());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public boolean mixedWrite() {
+        return todoRepository.updateTodo(CONTEXT_ID, randomId(), null, null, randomDone());
+    }
+
+    private UUID randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    private static String randomDone() {
+        return String.valueOf(ThreadLocalRandom.current().nextBoolean());
+    }
+}
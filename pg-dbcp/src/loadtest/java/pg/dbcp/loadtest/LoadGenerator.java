@@ -0,0 +1,231 @@
+package pg.dbcp.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are issued on a fixed arrival schedule regardless of how fast the
+ * server answers. Latency is measured from the time a request was scheduled to start, not from the time
+ * a worker got around to sending it, so queueing behind a slow server is counted instead of hidden
+ * (coordinated omission correction). Requests turned away with 503 are counted as shed rather than as errors, and
+ * left out of the latency so that it describes the requests that were served. Requests still running a minute after
+ * the last one was scheduled are abandoned and reported as unfinished.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class LoadGenerator {
+    private final String baseUrl;
+    private final String[] ids;
+    private final Operation[] schedule;
+    private final int threads;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> shed = new EnumMap<>(Operation.class);
+    private final LongAdder finished = new LongAdder();
+
+    public LoadGenerator(final String baseUrl, final String[] ids, final Map<Operation, Integer> mix, final int threads) {
+        this.baseUrl = baseUrl;
+        this.ids = ids;
+        this.threads = threads;
+
+        final List<Operation> weighted = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                weighted.add(entry.getKey());
+            }
+        }
+        this.schedule = weighted.toArray(new Operation[weighted.size()]);
+
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+            shed.put(operation, new LongAdder());
+        }
+    }
+
+    public Result run(final int rate, final long durationSeconds) throws InterruptedException {
+        final ExecutorService workers = Executors.newFixedThreadPool(threads);
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        for (Recorder recorder : recorders.values()) {
+            recorder.reset();
+        }
+        for (LongAdder adder : errors.values()) {
+            adder.reset();
+        }
+        for (LongAdder adder : shed.values()) {
+            adder.reset();
+        }
+        finished.reset();
+
+        long scheduled = 0;
+        for (long intendedStart = start; intendedStart < end; intendedStart = start + (++scheduled) * intervalNanos) {
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+
+            final long requestStart = intendedStart;
+            final Operation operation = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+            workers.execute(() -> execute(operation, requestStart));
+        }
+
+        workers.shutdown();
+        if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+            workers.shutdownNow();
+        }
+        final long elapsedNanos = System.nanoTime() - start;
+        final long unfinished = scheduled - finished.sum();
+
+        final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        final Map<Operation, Long> errorCounts = new EnumMap<>(Operation.class);
+        final Map<Operation, Long> shedCounts = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, recorders.get(operation).getIntervalHistogram());
+            errorCounts.put(operation, errors.get(operation).sum());
+            shedCounts.put(operation, shed.get(operation).sum());
+        }
+
+        return new Result(histograms, errorCounts, shedCounts, unfinished, elapsedNanos);
+    }
+
+    private void execute(final Operation operation, final long intendedStart) {
+        try {
+            measure(operation, intendedStart);
+        } finally {
+            finished.increment();
+        }
+    }
+
+    private void measure(final Operation operation, final long intendedStart) {
+        try {
+            final int status = send(operation);
+            if (status == 503) {
+                shed.get(operation).increment();
+                return;
+            }
+            if (status >= 500) {
+                errors.get(operation).increment();
+            }
+        } catch (IOException e) {
+            errors.get(operation).increment();
+        }
+
+        final long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+        recorders.get(operation).recordValue(latencyMicros);
+    }
+
+    private int send(final Operation operation) throws IOException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String path;
+        switch (operation) {
+            case LIST:
+                path = "/?limit=100";
+                break;
+            case CREATE:
+                path = "/?title=load-" + random.nextInt() + "&description=generated&isDone=" + random.nextBoolean();
+                break;
+            case UPDATE:
+                path = "/id/" + randomId() + "?isDone=" + random.nextBoolean();
+                break;
+            default:
+                path = "/id/" + randomId();
+                break;
+        }
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(operation.getMethod());
+        final int status = connection.getResponseCode();
+
+        // Drain the body so that the keep-alive connection goes back to the pool
+        try (InputStream stream = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+            if (stream != null) {
+                final byte[] buffer = new byte[8192];
+                while (stream.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+
+        return status;
+    }
+
+    private String randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    public static class Result {
+        private final Map<Operation, Histogram> histograms;
+        private final Map<Operation, Long> errors;
+        private final Map<Operation, Long> shed;
+        private final long unfinished;
+        private final long elapsedNanos;
+
+        Result(final Map<Operation, Histogram> histograms, final Map<Operation, Long> errors, final Map<Operation, Long> shed,
+               final long unfinished, final long elapsedNanos) {
+            this.histograms = histograms;
+            this.errors = errors;
+            this.shed = shed;
+            this.unfinished = unfinished;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public void print(final PrintStream out) {
+            final double elapsedSeconds = elapsedNanos / 1e9;
+            final Histogram total = new Histogram(3);
+            long totalErrors = 0;
+            long totalShed = 0;
+
+            out.printf("%-8s %10s %8s %8s %10s %10s %10s %10s %10s%n", "op", "count", "errors", "shed", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (Operation operation : Operation.values()) {
+                final Histogram histogram = histograms.get(operation);
+                if (histogram.getTotalCount() == 0 && shed.get(operation) == 0) {
+                    continue;
+                }
+
+                total.add(histogram);
+                totalErrors += errors.get(operation);
+                totalShed += shed.get(operation);
+                printRow(out, operation.name(), histogram, errors.get(operation), shed.get(operation), elapsedSeconds);
+            }
+            printRow(out, "TOTAL", total, totalErrors, totalShed, elapsedSeconds);
+
+            if (unfinished > 0) {
+                out.printf("%d requests had not finished a minute after the last one was scheduled and are missing above%n", unfinished);
+            }
+        }
+
+        private static void printRow(final PrintStream out, final String name, final Histogram histogram, final long errors, final long shed,
+                                     final double elapsedSeconds) {
+            out.printf("%-8s %10d %8d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                    name,
+                    histogram.getTotalCount(),
+                    errors,
+                    shed,
+                    histogram.getTotalCount() / elapsedSeconds,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pg.dbcp.loadtest;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public enum Operation {
+    LIST("GET"),
+    GET("GET"),
+    CREATE("POST"),
+    UPDATE("PUT"),
+    DELETE("DELETE");
+
+    private final String method;
+
+    Operation(final String method) {
+        this.method = method;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+}
@@ -2,14 +2,23 @@ package pg.dbcp;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pg.dbcp.controller.ListResponseCache;
+import pg.dbcp.controller.ResponseCompression;
+import pg.dbcp.controller.TodoCodec;
 import pg.dbcp.controller.TodoController;
+import pg.dbcp.limit.ConcurrencyLimiter;
+import pg.dbcp.model.TodoIds;
+import pg.dbcp.repository.CachingTodoRepository;
 import pg.dbcp.repository.TodoRepository;
+import pg.dbcp.server.AsyncServer;
 import pg.dbcp.service.TodoService;
 import pg.dbcp.store.TodoDataStore;
 
 import javax.sql.DataSource;
+import java.util.Properties;
 
 import static spark.Spark.port;
+import static spark.Spark.threadPool;
 
 /**
  * @author Abhishek Gupta
@@ -19,14 +28,101 @@ public class Application {
     private final static Logger logger = LoggerFactory.getLogger(Application.class);
 
     public static void main(String[] args) {
-        port(9000);
-
-        final DataSource dataSource = TodoDataStore.createDataSource("/db.properties");
-        if (dataSource != null) {
-            final TodoController todoController = new TodoController(new TodoService(new TodoRepository(dataSource)));
-            todoController.initializeRotues();
-        } else {
+        final Properties properties = TodoDataStore.loadProperties("/db.properties");
+        if (properties == null || !start(9000, properties)) {
             logger.error("Unable to initialize data source");
         }
     }
+
+    public static boolean start(final int port, final Properties properties) {
+        TodoIds.useTimeOrdered("timeOrdered".equalsIgnoreCase(properties.getProperty("idGenerator", "random").trim()));
+
+        final DataSource dataSource = TodoDataStore.createDataSource(properties);
+        if (dataSource == null) {
+            return false;
+        }
+
+        if (!TodoDataStore.migrate(dataSource)) {
+            return false;
+        }
+
+        final String replicaUrl = properties.getProperty("replicaUrl", "").trim();
+        final DataSource readDataSource = replicaUrl.isEmpty() ? dataSource : TodoDataStore.createReplicaDataSource(properties);
+        if (readDataSource == null) {
+            return false;
+        }
+
+        final boolean coalesceReads = Boolean.parseBoolean(properties.getProperty("coalesceReads", "false").trim());
+        final TodoService todoService = new TodoService(createRepository(dataSource, readDataSource, properties), coalesceReads);
+        final TodoController todoController = new TodoController(todoService,
+                TodoCodec.forName(properties.getProperty("jsonCodec", "gson")), createLimiter(properties),
+                createListCache(properties), createCompression(properties));
+        final int serverMaxThreads = Integer.parseInt(properties.getProperty("serverMaxThreads", "0"));
+
+        if ("async".equalsIgnoreCase(properties.getProperty("requestExecution", "blocking").trim())) {
+            final String workerThreads = properties.getProperty("asyncWorkerThreads", "").trim();
+            return AsyncServer.start(port, serverMaxThreads,
+                    Integer.parseInt(workerThreads.isEmpty() ? properties.getProperty("maxTotalConnections", "8") : workerThreads),
+                    Integer.parseInt(properties.getProperty("asyncMaxQueuedRequests", "10000")),
+                    todoController::initializeRotues);
+        }
+
+        port(port);
+        if (serverMaxThreads > 0) {
+            threadPool(serverMaxThreads);
+        }
+
+        todoController.initializeRotues();
+        return true;
+    }
+
+    private static ConcurrencyLimiter createLimiter(final Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("limiterEnabled", "false").trim())) {
+            return null;
+        }
+
+        return new ConcurrencyLimiter(Integer.parseInt(properties.getProperty("limiterInitialLimit", "20")),
+                Integer.parseInt(properties.getProperty("limiterMinLimit", "4")),
+                Integer.parseInt(properties.getProperty("limiterMaxLimit", "200")));
+    }
+
+    // Versions only count the writes made by this process, so tags are only safe to enable for a single instance
+    // that is the sole writer to the database
+    private static ListResponseCache createListCache(final Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("listETags", "false").trim())) {
+            return null;
+        }
+
+        return new ListResponseCache(Long.parseLong(properties.getProperty("listBodyCacheMaxBytes", "0").trim()));
+    }
+
+    private static ResponseCompression createCompression(final Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("compressResponses", "false").trim())) {
+            return null;
+        }
+
+        return new ResponseCompression(Integer.parseInt(properties.getProperty("compressionMinBytes", "1024").trim()));
+    }
+
+    private static TodoRepository createRepository(final DataSource dataSource, final DataSource readDataSource, final Properties properties) {
+        final long readYourWritesMillis = Long.parseLong(properties.getProperty("readYourWritesMillis", "0"));
+        if (readDataSource != dataSource) {
+            logger.info("Routing reads to replica, read-your-writes window: {} ms", readYourWritesMillis);
+        }
+
+        final long cacheMaximumSize = Long.parseLong(properties.getProperty("cacheMaximumSize", "0"));
+        if (cacheMaximumSize <= 0) {
+            final TodoRepository repository = new TodoRepository(dataSource, readDataSource, readYourWritesMillis);
+            final long batchWindowMicros = Long.parseLong(properties.getProperty("getByIdBatchWindowMicros", "0"));
+            if (batchWindowMicros > 0) {
+                logger.info("Batching lookups by id over {} us", batchWindowMicros);
+                repository.batchLookupsById(batchWindowMicros, Integer.parseInt(properties.getProperty("getByIdMaxBatchSize", "100")));
+            }
+            return repository;
+        }
+
+        final long cacheExpireAfterWriteSeconds = Long.parseLong(properties.getProperty("cacheExpireAfterWriteSeconds", "60"));
+        logger.info("Caching up to {} Todos for {} seconds", cacheMaximumSize, cacheExpireAfterWriteSeconds);
+        return new CachingTodoRepository(dataSource, readDataSource, readYourWritesMillis, cacheMaximumSize, cacheExpireAfterWriteSeconds);
+    }
 }
@@ -0,0 +1,67 @@
+package pg.dbcp.controller;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import pg.dbcp.model.Todo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams through a Gson JsonWriter with the hand-written TodoTypeAdapter.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class GsonTodoCodec implements TodoCodec {
+    private final TypeAdapter<Todo> adapter = new TodoTypeAdapter();
+
+    @Override
+    public Writer open(final OutputStream out) {
+        final JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // The same settings Gson applies when it is given a JsonWriter with serializeNulls
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(true);
+
+        return new Writer() {
+            private boolean paged;
+
+            @Override
+            public void writeTodo(final Todo todo) throws IOException {
+                adapter.write(writer, todo);
+            }
+
+            @Override
+            public void beginList(final boolean paged) throws IOException {
+                this.paged = paged;
+                if (paged) {
+                    writer.beginObject();
+                    writer.name("todos");
+                }
+                writer.beginArray();
+            }
+
+            @Override
+            public void endList(final String next) throws IOException {
+                writer.endArray();
+                if (paged) {
+                    writer.name("next").value(next);
+                    writer.endObject();
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            // Closing the JsonWriter would close the response stream too
+            @Override
+            public void close() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package pg.dbcp.controller;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses response bodies with gzip, or deflate for clients that only accept that. Bodies are streamed, so
+ * their size is not known up front: the first minBytes are held back, and only a body that outgrows them is
+ * compressed. Smaller bodies go out as they are, since compressing them costs more than it saves.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class ResponseCompression {
+    private final static int BUFFER_SIZE = 8192;
+
+    private final int minBytes;
+
+    public ResponseCompression(int minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    /**
+     * @param compression the compression to apply, or null to write bodies as they are
+     */
+    public static Body open(final ResponseCompression compression, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final String encoding = (compression == null) ? null : accepted(request.getHeader("Accept-Encoding"));
+        if (compression != null) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+
+        return new Body(response, encoding, (encoding == null) ? 0 : compression.minBytes);
+    }
+
+    private static String accepted(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        boolean deflate = false;
+        for (String candidate : acceptEncoding.split(",")) {
+            final String[] parts = candidate.trim().split(";");
+            final String coding = parts[0].trim().toLowerCase();
+            if (parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?")) {
+                continue;
+            }
+
+            if (coding.equals("gzip") || coding.equals("*")) {
+                return "gzip";
+            }
+            deflate |= coding.equals("deflate");
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    /**
+     * A response body that must be finished once written; finishing completes the body without closing the
+     * response stream.
+     */
+    public static class Body extends OutputStream {
+        private final HttpServletResponse response;
+        private final OutputStream out;
+        private final String encoding;
+        private final byte[] pending;
+        private int pendingCount;
+        private OutputStream compressed;
+
+        Body(final HttpServletResponse response, final String encoding, final int minBytes) throws IOException {
+            this.response = response;
+            this.out = response.getOutputStream();
+            this.encoding = encoding;
+            this.pending = new byte[minBytes];
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (compressed != null) {
+                compressed.write(b, off, len);
+            } else if (encoding != null && pendingCount + len <= pending.length) {
+                System.arraycopy(b, off, pending, pendingCount, len);
+                pendingCount += len;
+            } else if (encoding != null) {
+                startCompressing();
+                compressed.write(b, off, len);
+            } else {
+                out.write(b, off, len);
+            }
+        }
+
+        // Held back bytes stay held back, or the headers would be sent before the encoding is known
+        @Override
+        public void flush() throws IOException {
+            if (compressed != null) {
+                compressed.flush();
+            } else if (encoding == null) {
+                out.flush();
+            }
+        }
+
+        public void finish() throws IOException {
+            if (compressed != null) {
+                // Also releases the deflater, while the shield keeps the response stream open
+                compressed.close();
+            } else {
+                out.write(pending, 0, pendingCount);
+                out.flush();
+            }
+        }
+
+        private void startCompressing() throws IOException {
+            response.setHeader("Content-Encoding", encoding);
+            final OutputStream shield = new FilterOutputStream(out) {
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+
+            compressed = encoding.equals("gzip") ? new GZIPOutputStream(shield, BUFFER_SIZE) : new DeflaterOutputStream(shield);
+            compressed.write(pending, 0, pendingCount);
+        }
+    }
+}
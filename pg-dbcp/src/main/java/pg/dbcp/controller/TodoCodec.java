@@ -0,0 +1,42 @@
+package pg.dbcp.controller;
+
+import pg.dbcp.model.Todo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes Todos as JSON straight to a response stream, either as a single object or as a list that is optionally
+ * wrapped in a page with the cursor of the next one. Every codec produces the same bytes.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public interface TodoCodec {
+    Writer open(OutputStream out);
+
+    /**
+     * @param name gson, or utf8 for the codec that encodes into reusable per-thread byte buffers
+     */
+    static TodoCodec forName(final String name) {
+        return "utf8".equalsIgnoreCase(name.trim()) ? new Utf8TodoCodec() : new GsonTodoCodec();
+    }
+
+    interface Writer {
+        void writeTodo(Todo todo) throws IOException;
+
+        void beginList(boolean paged) throws IOException;
+
+        /**
+         * @param next the cursor of the next page, only written for paged lists
+         */
+        void endList(String next) throws IOException;
+
+        void flush() throws IOException;
+
+        /**
+         * Flushes what is left and lets go of the stream, which stays open, once the response is complete.
+         */
+        void close() throws IOException;
+    }
+}
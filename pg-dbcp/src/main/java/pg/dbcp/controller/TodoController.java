@@ -2,17 +2,40 @@ package pg.dbcp.controller;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
 import org.eclipse.jetty.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pg.dbcp.limit.ConcurrencyLimiter;
+import pg.dbcp.limit.ConcurrencyLimiter.Priority;
+import pg.dbcp.metrics.MetricsRegistry;
 import pg.dbcp.model.Todo;
+import pg.dbcp.model.TodoIds;
+import pg.dbcp.model.TodoOperation;
+import pg.dbcp.model.TodoOperationResult;
+import pg.dbcp.repository.TodoStoreException;
 import pg.dbcp.service.TodoService;
+import spark.Request;
+import spark.Response;
 
-import java.lang.reflect.Type;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
+import static pg.dbcp.limit.LimitedRoute.limited;
+import static pg.dbcp.metrics.TimedRoute.timed;
 import static spark.Spark.*;
 
 /**
@@ -21,63 +44,128 @@ import static spark.Spark.*;
  */
 public class TodoController {
     private final static Logger logger = LoggerFactory.getLogger(TodoController.class);
+    private final static String REQUEST_ID = "reqId";
+    private final static String WRITE_TOKEN_COOKIE = "todoWriteToken";
+    private final static int DEFAULT_PAGE_SIZE = 100;
+    private final static int MAX_PAGE_SIZE = 1000;
 
     private final TodoService todoService;
-    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final TodoCodec todoCodec;
+    private final ConcurrencyLimiter limiter;
+    private final ListResponseCache listCache;
+    private final ResponseCompression compression;
+    private final Gson gson = new GsonBuilder().serializeNulls().registerTypeAdapter(Todo.class, new TodoTypeAdapter())
+            .registerTypeAdapter(UUID.class, new TodoIdTypeAdapter()).create();
+    private final RequestIdGenerator requestIdGenerator = new RequestIdGenerator();
 
     public TodoController(TodoService todoService) {
+        this(todoService, new GsonTodoCodec());
+    }
+
+    public TodoController(TodoService todoService, TodoCodec todoCodec) {
+        this(todoService, todoCodec, null);
+    }
+
+    public TodoController(TodoService todoService, TodoCodec todoCodec, ConcurrencyLimiter limiter) {
+        this(todoService, todoCodec, limiter, null, null);
+    }
+
+    /**
+     * @param limiter the limit on requests in flight, or null for none
+     * @param listCache tags and caches list responses, or null to always write them in full
+     * @param compression compresses response bodies, or null to leave them as they are
+     */
+    public TodoController(TodoService todoService, TodoCodec todoCodec, ConcurrencyLimiter limiter, ListResponseCache listCache, ResponseCompression compression) {
         this.todoService = todoService;
+        this.todoCodec = todoCodec;
+        this.limiter = limiter;
+        this.listCache = listCache;
+        this.compression = compression;
     }
 
     public void initializeRotues() {
-        before((request, response) -> request.session().attribute("reqId", UUID.randomUUID().toString()));
+        before((request, response) -> {
+            final String reqId = requestIdGenerator.nextId();
+            request.attribute(REQUEST_ID, reqId);
+            todoService.readYourWrites(reqId, request.cookie(WRITE_TOKEN_COOKIE));
+        });
 
         after((request, response) -> response.type("application/json"));
 
-        get("/", (request, response) -> {
-            final String reqId = request.session().attribute("reqId");
-            logger.info("[{}] | Retrieving All Todos", reqId);
-            final List<Todo> todos = todoService.getAllTodos(reqId);
-            logger.info("[{}] | Retrieved {} Todos", reqId, todos.size());
-            final Type type = new TypeToken<List<Todo>>() {}.getType();
-            return gson.toJson(todos, type);
+        // A store failure is not the client's fault, and a list that failed part way must not pass for a whole one:
+        // the response is replaced while it is still buffered, and the connection is cut once some of it has been sent
+        exception(TodoStoreException.class, (exception, request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
+            logger.error("[{}] | Unable to access Todos", reqId, exception);
+            final HttpServletResponse raw = response.raw();
+            if (!raw.isCommitted()) {
+                raw.reset();
+                response.status(HttpStatus.SERVICE_UNAVAILABLE_503);
+                response.body("");
+            } else if (raw instanceof org.eclipse.jetty.server.Response) {
+                ((org.eclipse.jetty.server.Response) raw).getHttpChannel().abort(exception);
+            }
         });
 
-        get("/pending", (request, response) -> {
-            final String reqId = request.session().attribute("reqId");
-            logger.info("[{}] | Retrieving Pending Todos", reqId);
-            final List<Todo> todos = todoService.getPendingTodos(reqId);
-            logger.info("[{}] | Retrieved {} Todos", reqId, todos.size());
-            final Type type = new TypeToken<List<Todo>>() {}.getType();
-            return gson.toJson(todos, type);
+        get("/metrics", (request, response) -> {
+            response.type("text/plain; version=0.0.4");
+            MetricsRegistry.DEFAULT.write(new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8));
+            return "";
         });
 
-        get("/completed", (request, response) -> {
-            final String reqId = request.session().attribute("reqId");
+        get("/", timed("GET", "/", limited(limiter, Priority.SCAN, (request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
+            logger.info("[{}] | Retrieving All Todos", reqId);
+            final int count = writeTodos(request, response, (after, limit, consumer) -> todoService.streamAllTodos(reqId, after, limit, consumer));
+            logger.info("[{}] | Retrieved {} Todos", reqId, count);
+            return "";
+        })));
+
+        get("/pending", timed("GET", "/pending", limited(limiter, Priority.SCAN, (request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
+            logger.info("[{}] | Retrieving Pending Todos", reqId);
+            final int count = writeTodos(request, response, (after, limit, consumer) -> todoService.streamPendingTodos(reqId, after, limit, consumer));
+            logger.info("[{}] | Retrieved {} Todos", reqId, count);
+            return "";
+        })));
+
+        get("/completed", timed("GET", "/completed", limited(limiter, Priority.SCAN, (request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
             logger.info("[{}] | Retrieving Completed Todos", reqId);
-            final List<Todo> todos = todoService.getCompletedTodos(reqId);
-            logger.info("[{}] | Retrieved {} Todos", reqId, todos.size());
-            final Type type = new TypeToken<List<Todo>>() {}.getType();
-            return gson.toJson(todos, type);
-        });
+            final int count = writeTodos(request, response, (after, limit, consumer) -> todoService.streamCompletedTodos(reqId, after, limit, consumer));
+            logger.info("[{}] | Retrieved {} Todos", reqId, count);
+            return "";
+        })));
 
-        get("/id/:id", (request, response) -> {
+        get("/id/:id", timed("GET", "/id/:id", limited(limiter, Priority.READ, (request, response) -> {
             final String id = request.params("id");
-            final String reqId = request.session().attribute("reqId");
+            final String reqId = request.attribute(REQUEST_ID);
             logger.info("[{}] | Retrieving Todo with Id: {}", reqId, id);
-            final Todo todo = todoService.getTodoById(reqId, id);
+            final Todo todo = todoService.getTodoById(reqId, TodoIds.parse(id));
             if (todo == null) {
                 logger.error("[{}] | No Todo found with Id: {}", reqId, id);
                 halt(HttpStatus.NOT_FOUND_404);
                 return null;
             } else {
                 logger.info("[{}] | Retrieved Todo with Id: {}", reqId, id);
-                return gson.toJson(todo, Todo.class);
+                response.type("application/json");
+                final ResponseCompression.Body body = ResponseCompression.open(compression, request.raw(), response.raw());
+                final TodoCodec.Writer writer = todoCodec.open(body);
+                writer.writeTodo(todo);
+                writer.close();
+                body.finish();
+                return "";
             }
-        });
+        })));
+
+        get("/ids", timed("GET", "/ids", limited(limiter, Priority.READ,
+                (request, response) -> writeTodosByIds(request, response, request.queryParamsValues("id")))));
 
-        post("/", (request, response) -> {
-            final String reqId = request.session().attribute("reqId");
+        post("/ids", timed("POST", "/ids", limited(limiter, Priority.READ,
+                (request, response) -> writeTodosByIds(request, response, parseIds(request.body())))));
+
+        post("/", timed("POST", "/", limited(limiter, Priority.WRITE, (request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
             logger.info("[{}] | Creating new Todo", reqId);
             final String title = request.queryParams("title");
             final String description = request.queryParams("description");
@@ -89,64 +177,262 @@ public class TodoController {
             final boolean added = todoService.addTodo(reqId, todo);
             if (added) {
                 logger.info("[{}] | New Todo successfully created", reqId);
+                issueWriteToken(response);
                 halt(HttpStatus.CREATED_201);
             } else {
                 logger.error("[{}] | Unable to create Todo", reqId);
                 halt(HttpStatus.BAD_REQUEST_400);
             }
             return null;
-        });
+        })));
 
-        put("/id/:id", (request, response) -> {
+        post("/batch", timed("POST", "/batch", limited(limiter, Priority.WRITE, (request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
+            logger.info("[{}] | Executing batch", reqId);
+            final List<TodoOperation> operations = parseOperations(request.body());
+            if (operations == null) {
+                logger.error("[{}] | Invalid batch", reqId);
+                halt(HttpStatus.BAD_REQUEST_400);
+                return null;
+            }
+
+            final List<TodoOperationResult> results = todoService.executeBatch(reqId, operations);
+            logger.info("[{}] | Executed batch of {} operations", reqId, results.size());
+            issueWriteToken(response);
+            return gson.toJson(results);
+        })));
+
+        put("/id/:id", timed("PUT", "/id/:id", limited(limiter, Priority.WRITE, (request, response) -> {
             final String id = request.params("id");
-            final String reqId = request.session().attribute("reqId");
+            final String reqId = request.attribute(REQUEST_ID);
             logger.info("[{}] | Updating Todo with Id: {}", reqId, id);
             final String title = request.queryParams("title");
             final String description = request.queryParams("description");
             final String isDoneString = request.queryParams("isDone");
-            final boolean updated = todoService.updateTodo(reqId, id, title, description, isDoneString);
+            final boolean updated = todoService.updateTodo(reqId, TodoIds.parse(id), title, description, isDoneString);
             if (updated) {
                 logger.info("[{}] | Updated Todo with Id: {}", reqId, id);
+                issueWriteToken(response);
                 halt(HttpStatus.ACCEPTED_202);
             } else {
                 logger.error("[{}] | Unable to update Todo with Id: {}", reqId, id);
                 halt(HttpStatus.NOT_FOUND_404);
             }
             return null;
-        });
+        })));
 
-        delete("/", (request, response) -> {
-            final String reqId = request.session().attribute("reqId");
+        delete("/", timed("DELETE", "/", limited(limiter, Priority.WRITE, (request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
             logger.info("[{}] | Deleting All Todos", reqId);
             todoService.deleteAllTodos(reqId);
             logger.info("[{}] | Deleted All Todos", reqId);
+            issueWriteToken(response);
             halt(HttpStatus.ACCEPTED_202);
             return null;
-        });
+        })));
 
-        delete("/completed", (request, response) -> {
-            final String reqId = request.session().attribute("reqId");
+        delete("/completed", timed("DELETE", "/completed", limited(limiter, Priority.WRITE, (request, response) -> {
+            final String reqId = request.attribute(REQUEST_ID);
             logger.info("[{}] | Deleting Completed Todos", reqId);
-            todoService.deleteCompletedTodos(reqId);
-            logger.info("[{}] | Deleted Completed Todos", reqId);
-            halt(HttpStatus.ACCEPTED_202);
-            return null;
-        });
+            final int deleted = todoService.deleteCompletedTodos(reqId);
+            logger.info("[{}] | Deleted {} Completed Todos", reqId, deleted);
+            issueWriteToken(response);
+            response.status(HttpStatus.ACCEPTED_202);
+            return gson.toJson(Collections.singletonMap("deleted", deleted));
+        })));
 
-        delete("/id/:id", (request, response) -> {
+        delete("/id/:id", timed("DELETE", "/id/:id", limited(limiter, Priority.WRITE, (request, response) -> {
             final String id = request.params("id");
-            final String reqId = request.session().attribute("reqId");
+            final String reqId = request.attribute(REQUEST_ID);
             logger.info("[{}] | Deleting Todo with Id: {}", reqId, id);
-            final boolean deleted = todoService.deleteTodoById(reqId, id);
+            final boolean deleted = todoService.deleteTodoById(reqId, TodoIds.parse(id));
             if (deleted) {
                 logger.info("[{}] | Deleted Todo with Id: {}", reqId, id);
+                issueWriteToken(response);
                 halt(HttpStatus.ACCEPTED_202);
             } else {
                 logger.error("[{}] | Unable to delete Todo with Id: {}", reqId, id);
                 halt(HttpStatus.NOT_FOUND_404);
             }
             return null;
+        })));
+    }
+
+    // The token comes back with the client's later requests, whichever instance serves them, and sends their reads to the primary
+    private void issueWriteToken(final Response response) {
+        final String token = todoService.writeToken();
+        if (token != null) {
+            final Cookie cookie = new Cookie(WRITE_TOKEN_COOKIE, token);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.raw().addCookie(cookie);
+        }
+    }
+
+    private int writeTodos(final Request request, final Response response, final TodoSource source) throws IOException {
+        final String limitParam = request.queryParams("limit");
+        final String cursorParam = request.queryParams("after");
+        final boolean paged = (limitParam != null) || (cursorParam != null);
+        final int limit = paged ? parseLimit(limitParam) : 0;
+        final UUID after = (cursorParam == null) ? null : decodeCursor(cursorParam);
+
+        // Taken before anything is read, so the tag is never newer than the Todos written under it
+        final long version = todoService.getVersion();
+        final String etag = (listCache == null || version < 0) ? null : listCache.etag(version);
+        if (etag != null) {
+            response.header("ETag", etag);
+            if (ListResponseCache.matches(request.headers("If-None-Match"), etag)) {
+                halt(HttpStatus.NOT_MODIFIED_304);
+            }
+        }
+
+        response.type("application/json");
+        final ResponseCompression.Body body = ResponseCompression.open(compression, request.raw(), response.raw());
+        final String key = request.pathInfo() + (paged ? "?" + limit + "&" + cursorParam : "");
+        final ListResponseCache.Body cached = (etag == null) ? null : listCache.get(version, key);
+        if (cached != null) {
+            cached.writeTo(body);
+            body.finish();
+            return cached.getCount();
+        }
+
+        // Todos are serialized one at a time straight to the servlet output stream instead of into a String
+        final ListResponseCache.Recording recording = (etag == null) ? null : listCache.record(body);
+        final TodoCodec.Writer writer = todoCodec.open((recording == null) ? body : recording);
+        writer.beginList(paged);
+
+        final AtomicReference<UUID> lastId = new AtomicReference<>();
+        final int count = source.stream(after, limit, todo -> {
+            try {
+                writer.writeTodo(todo);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            lastId.set(todo.getId());
         });
+
+        writer.endList((paged && count == limit) ? encodeCursor(lastId.get()) : null);
+        writer.close();
+        body.finish();
+        if (recording != null) {
+            listCache.put(version, key, recording, count);
+        }
+        return count;
     }
-}
 
+    // Todos are written in the order of the requested ids, with null for each id that matches none
+    private Object writeTodosByIds(final Request request, final Response response, final String[] ids) throws IOException {
+        final String reqId = request.attribute(REQUEST_ID);
+        if (ids == null || ids.length == 0 || ids.length > MAX_PAGE_SIZE) {
+            logger.error("[{}] | Invalid list of Ids", reqId);
+            halt(HttpStatus.BAD_REQUEST_400);
+            return null;
+        }
+
+        logger.info("[{}] | Retrieving {} Todos by Id", reqId, ids.length);
+        final List<UUID> todoIds = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            todoIds.add(TodoIds.parse(id));
+        }
+        final List<Todo> todos = todoService.getTodosByIds(reqId, todoIds);
+
+        response.type("application/json");
+        final ResponseCompression.Body body = ResponseCompression.open(compression, request.raw(), response.raw());
+        final TodoCodec.Writer writer = todoCodec.open(body);
+        writer.beginList(false);
+        int found = 0;
+        for (Todo todo : todos) {
+            writer.writeTodo(todo);
+            if (todo != null) {
+                found++;
+            }
+        }
+        writer.endList(null);
+        writer.close();
+        body.finish();
+
+        logger.info("[{}] | Retrieved {} of {} Todos by Id", reqId, found, ids.length);
+        return "";
+    }
+
+    private String[] parseIds(final String body) {
+        try {
+            return gson.fromJson(body, String[].class);
+        } catch (JsonParseException e) {
+            logger.error("Unable to parse Ids", e);
+            return null;
+        }
+    }
+
+    private List<TodoOperation> parseOperations(final String body) {
+        final TodoOperation[] operations;
+        try {
+            operations = gson.fromJson(body, TodoOperation[].class);
+        } catch (JsonParseException | IllegalArgumentException e) {
+            logger.error("Unable to parse batch", e);
+            return null;
+        }
+
+        if (operations == null) {
+            return null;
+        }
+
+        for (TodoOperation operation : operations) {
+            if (operation == null || operation.getOp() == null) {
+                return null;
+            }
+
+            if (operation.getOp() != TodoOperation.Type.CREATE && operation.getId() == null) {
+                return null;
+            }
+        }
+
+        return Arrays.asList(operations);
+    }
+
+    private static int parseLimit(final String limitParam) {
+        if (limitParam == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+
+        try {
+            final int limit = Integer.parseInt(limitParam);
+            if (limit > 0) {
+                return Math.min(limit, MAX_PAGE_SIZE);
+            }
+        } catch (NumberFormatException e) {
+            logger.error("Invalid limit: {}", limitParam);
+        }
+
+        halt(HttpStatus.BAD_REQUEST_400);
+        return 0;
+    }
+
+    // Cursors carry the 16 bytes of the last id, which encode to 22 characters
+    private static String encodeCursor(final UUID id) {
+        final ByteBuffer bytes = ByteBuffer.allocate(16);
+        bytes.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    private static UUID decodeCursor(final String cursor) {
+        try {
+            final byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length == 16) {
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                return new UUID(buffer.getLong(), buffer.getLong());
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+
+        logger.error("Invalid cursor: {}", cursor);
+        halt(HttpStatus.BAD_REQUEST_400);
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface TodoSource {
+        int stream(UUID after, int limit, Consumer<Todo> consumer);
+    }
+}
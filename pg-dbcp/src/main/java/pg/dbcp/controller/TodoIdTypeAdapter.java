@@ -0,0 +1,40 @@
+package pg.dbcp.controller;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import pg.dbcp.model.TodoIds;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Reads ids with TodoIds.parse in place of Gson's own UUID adapter, which passes them to UUID.fromString and so
+ * accepts strings such as "1-2-3-4-5".
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoIdTypeAdapter extends TypeAdapter<UUID> {
+    @Override
+    public void write(final JsonWriter out, final UUID id) throws IOException {
+        out.value((id == null) ? null : id.toString());
+    }
+
+    @Override
+    public UUID read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        final String idString = in.nextString();
+        final UUID id = TodoIds.parse(idString);
+        if (id == null) {
+            throw new JsonParseException("Invalid id: " + idString);
+        }
+        return id;
+    }
+}
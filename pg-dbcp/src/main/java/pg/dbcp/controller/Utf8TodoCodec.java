@@ -0,0 +1,236 @@
+package pg.dbcp.controller;
+
+import pg.dbcp.model.Todo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Encodes Todos directly into UTF-8 bytes in a buffer that each thread reuses across responses, without the
+ * Strings, char buffers and charset encoders of the Gson path. Strings are escaped exactly as Gson escapes them
+ * by default, so responses are byte for byte the same as GsonTodoCodec's.
+ *
+ * A writer belongs to the thread that opened it and must be finished before that thread opens another.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class Utf8TodoCodec implements TodoCodec {
+    private final static int BUFFER_SIZE = 8192;
+    private final static byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private final static byte[][] ESCAPES = new byte[128][];
+    private final static byte[] LINE_SEPARATOR = ascii("\\u2028");
+    private final static byte[] PARAGRAPH_SEPARATOR = ascii("\\u2029");
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = ascii(String.format("\\u%04x", c));
+        }
+        ESCAPES['"'] = ascii("\\\"");
+        ESCAPES['\\'] = ascii("\\\\");
+        ESCAPES['\t'] = ascii("\\t");
+        ESCAPES['\b'] = ascii("\\b");
+        ESCAPES['\n'] = ascii("\\n");
+        ESCAPES['\r'] = ascii("\\r");
+        ESCAPES['\f'] = ascii("\\f");
+        // Gson is HTML-safe by default
+        ESCAPES['<'] = ascii("\\u003c");
+        ESCAPES['>'] = ascii("\\u003e");
+        ESCAPES['&'] = ascii("\\u0026");
+        ESCAPES['='] = ascii("\\u003d");
+        ESCAPES['\''] = ascii("\\u0027");
+    }
+
+    private final ThreadLocal<Utf8Writer> writers = ThreadLocal.withInitial(Utf8Writer::new);
+
+    @Override
+    public Writer open(final OutputStream out) {
+        final Utf8Writer writer = writers.get();
+        writer.reset(out);
+        return writer;
+    }
+
+    private static class Utf8Writer implements Writer {
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private OutputStream out;
+        private int position;
+        private boolean paged;
+        private boolean firstInList;
+
+        void reset(final OutputStream out) {
+            this.out = out;
+            this.position = 0;
+            this.paged = false;
+            this.firstInList = true;
+        }
+
+        @Override
+        public void writeTodo(final Todo todo) throws IOException {
+            if (!firstInList) {
+                writeByte(',');
+            }
+            firstInList = false;
+
+            if (todo == null) {
+                writeAscii("null");
+                return;
+            }
+
+            writeAscii("{\"id\":");
+            writeId(todo.getId());
+            writeAscii(",\"title\":");
+            writeString(todo.getTitle());
+            writeAscii(",\"description\":");
+            writeString(todo.getDescription());
+            writeAscii(todo.isDone() ? ",\"isDone\":true}" : ",\"isDone\":false}");
+        }
+
+        @Override
+        public void beginList(final boolean paged) throws IOException {
+            this.paged = paged;
+            this.firstInList = true;
+            writeAscii(paged ? "{\"todos\":[" : "[");
+        }
+
+        @Override
+        public void endList(final String next) throws IOException {
+            writeByte(']');
+            if (paged) {
+                writeAscii(",\"next\":");
+                writeString(next);
+                writeByte('}');
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        // The writer outlives the response on its thread, so it must not keep the stream and whatever it tees into
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                out = null;
+            }
+        }
+
+        private void writeId(final UUID id) throws IOException {
+            if (id == null) {
+                writeAscii("null");
+                return;
+            }
+
+            ensure(38);
+            buffer[position++] = '"';
+            writeHex(id.getMostSignificantBits() >>> 32, 8);
+            buffer[position++] = '-';
+            writeHex(id.getMostSignificantBits() >>> 16, 4);
+            buffer[position++] = '-';
+            writeHex(id.getMostSignificantBits(), 4);
+            buffer[position++] = '-';
+            writeHex(id.getLeastSignificantBits() >>> 48, 4);
+            buffer[position++] = '-';
+            writeHex(id.getLeastSignificantBits(), 12);
+            buffer[position++] = '"';
+        }
+
+        private void writeHex(final long value, final int digits) {
+            for (int i = digits - 1; i >= 0; i--) {
+                buffer[position + i] = HEX[(int) (value >>> ((digits - 1 - i) * 4)) & 0xf];
+            }
+            position += digits;
+        }
+
+        private void writeString(final String value) throws IOException {
+            if (value == null) {
+                writeAscii("null");
+                return;
+            }
+
+            writeByte('"');
+            final int length = value.length();
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                if (c < 0x80) {
+                    final byte[] escape = ESCAPES[c];
+                    if (escape == null) {
+                        ensure(1);
+                        buffer[position++] = (byte) c;
+                    } else {
+                        writeBytes(escape);
+                    }
+                } else if (c < 0x800) {
+                    ensure(2);
+                    buffer[position++] = (byte) (0xc0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3f));
+                } else if (c == '\u2028') {
+                    writeBytes(LINE_SEPARATOR);
+                } else if (c == '\u2029') {
+                    writeBytes(PARAGRAPH_SEPARATOR);
+                } else if (Character.isSurrogate(c)) {
+                    // A lone surrogate becomes '?', as String.getBytes does
+                    final int codePoint = (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)))
+                            ? Character.toCodePoint(c, value.charAt(++i)) : '?';
+                    if (codePoint == '?') {
+                        writeByte('?');
+                    } else {
+                        ensure(4);
+                        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                    }
+                } else {
+                    ensure(3);
+                    buffer[position++] = (byte) (0xe0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            writeByte('"');
+        }
+
+        private void writeAscii(final String value) throws IOException {
+            final int length = value.length();
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+        }
+
+        private void writeBytes(final byte[] bytes) throws IOException {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeByte(final char c) throws IOException {
+            ensure(1);
+            buffer[position++] = (byte) c;
+        }
+
+        // Callers never ask for more than a few dozen bytes at once
+        private void ensure(final int length) throws IOException {
+            if (position + length > buffer.length) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            if (position > 0) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
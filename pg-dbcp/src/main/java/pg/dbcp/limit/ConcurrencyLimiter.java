@@ -0,0 +1,143 @@
+package pg.dbcp.limit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pg.dbcp.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the number of requests in flight with a limit that follows latency, in the manner of a gradient limiter.
+ * Every window the mean latency of the window is compared with a slow moving average of it: while they agree the
+ * limit grows by about its square root, and as the window gets slower than the average the limit shrinks in
+ * proportion. Each window moves the limit a fifth of the way to its target, and the limit only grows while requests
+ * actually use more than half of it.
+ *
+ * Lower priorities may only fill part of the limit, so they are turned away first as it shrinks.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class ConcurrencyLimiter {
+    private final static Logger logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+    private final static long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private final static double SMOOTHING = 0.2;
+    // How much slower than usual a window may be before the limit starts to shrink
+    private final static double TOLERANCE = 1.5;
+    private final static int BASELINE_WINDOWS = 600;
+
+    public enum Priority {
+        WRITE(1.0),
+        READ(0.9),
+        SCAN(0.75);
+
+        private final double share;
+
+        Priority(final double share) {
+            this.share = share;
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final Map<Priority, LongAdder> shed = new EnumMap<>(Priority.class);
+    private volatile double limit;
+    private double baselineNanos;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+
+        for (Priority priority : Priority.values()) {
+            shed.put(priority, MetricsRegistry.DEFAULT.counter("todo_requests_shed_total",
+                    "Requests turned away by the concurrency limit", "priority", priority.name().toLowerCase()));
+        }
+        MetricsRegistry.DEFAULT.gauge("todo_concurrency_limit", "Current limit on requests in flight", () -> (long) limit);
+        MetricsRegistry.DEFAULT.gauge("todo_requests_in_flight", "Requests holding a slot of the concurrency limit", inFlight::get);
+        logger.info("Limiting requests in flight between {} and {}, starting at {}", this.minLimit, this.maxLimit, (int) limit);
+    }
+
+    public boolean tryAcquire(final Priority priority) {
+        final int allowed = Math.max(1, (int) (limit * priority.share));
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= allowed) {
+                shed.get(priority).increment();
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos how long the request held its slot
+     */
+    public void release(final long latencyNanos) {
+        inFlight.decrementAndGet();
+        windowLatencyNanos.add(latencyNanos);
+        windowSamples.increment();
+
+        final long start = windowStart.get();
+        final long now = System.nanoTime();
+        if (now - start >= WINDOW_NANOS && updateLock.tryLock()) {
+            try {
+                if (windowStart.compareAndSet(start, now)) {
+                    update();
+                }
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private void update() {
+        final long samples = windowSamples.sumThenReset();
+        final long latencyNanos = windowLatencyNanos.sumThenReset();
+        final int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+        if (samples == 0) {
+            return;
+        }
+
+        final double windowNanos = (double) latencyNanos / samples;
+        if (baselineNanos == 0) {
+            baselineNanos = windowNanos;
+        } else {
+            baselineNanos += (windowNanos - baselineNanos) / BASELINE_WINDOWS;
+            // Let the baseline catch up quickly when latency recovers after a long slow spell
+            if (baselineNanos > 2 * windowNanos) {
+                baselineNanos *= 0.95;
+            }
+        }
+
+        final double current = limit;
+        final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineNanos / windowNanos));
+        double target = current * gradient + Math.sqrt(current);
+        if (maxInFlight < current / 2) {
+            target = Math.min(target, current);
+        }
+
+        final double newLimit = Math.max(minLimit, Math.min(maxLimit, current * (1 - SMOOTHING) + target * SMOOTHING));
+        if ((int) newLimit != (int) current) {
+            logger.debug("Concurrency limit {} -> {}, window latency {} us, baseline {} us", (int) current, (int) newLimit,
+                    (long) (windowNanos / 1000), (long) (baselineNanos / 1000));
+        }
+        limit = newLimit;
+    }
+}
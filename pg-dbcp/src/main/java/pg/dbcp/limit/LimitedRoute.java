@@ -0,0 +1,52 @@
+package pg.dbcp.limit;
+
+import org.eclipse.jetty.http.HttpStatus;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import static spark.Spark.halt;
+
+/**
+ * Holds a slot of the concurrency limit while a route runs, and answers at once with 503 when there is none. Like
+ * TimedRoute this wraps the route rather than using before/after filters, because Spark skips after filters for
+ * halted requests and the slot would never be given back.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class LimitedRoute implements Route {
+    private final static String RETRY_AFTER_SECONDS = "1";
+
+    private final ConcurrencyLimiter limiter;
+    private final ConcurrencyLimiter.Priority priority;
+    private final Route route;
+
+    private LimitedRoute(final ConcurrencyLimiter limiter, final ConcurrencyLimiter.Priority priority, final Route route) {
+        this.limiter = limiter;
+        this.priority = priority;
+        this.route = route;
+    }
+
+    /**
+     * @param limiter the limiter to hold a slot of, or null to leave the route unlimited
+     */
+    public static Route limited(final ConcurrencyLimiter limiter, final ConcurrencyLimiter.Priority priority, final Route route) {
+        return (limiter == null) ? route : new LimitedRoute(limiter, priority, route);
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) throws Exception {
+        if (!limiter.tryAcquire(priority)) {
+            response.header("Retry-After", RETRY_AFTER_SECONDS);
+            halt(HttpStatus.SERVICE_UNAVAILABLE_503);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            return route.handle(request, response);
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package pg.dbcp.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the application metrics and renders them in the Prometheus text exposition format. Metrics are
+ * registered once at startup; registering the same name and labels again replaces the earlier series.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class MetricsRegistry {
+    public final static MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public LongAdder counter(final String name, final String help, final String... labels) {
+        final LongAdder counter = new LongAdder();
+        family(name, help, "counter").series.put(formatLabels(labels), counter);
+        return counter;
+    }
+
+    public void counter(final String name, final String help, final LongSupplier value, final String... labels) {
+        family(name, help, "counter").series.put(formatLabels(labels), value);
+    }
+
+    public void gauge(final String name, final String help, final LongSupplier value, final String... labels) {
+        family(name, help, "gauge").series.put(formatLabels(labels), value);
+    }
+
+    public LatencyHistogram histogram(final String name, final String help, final String... labels) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        family(name, help, "histogram").series.put(formatLabels(labels), histogram);
+        return histogram;
+    }
+
+    public void write(final Writer writer) throws IOException {
+        for (Family family : families.values()) {
+            writer.write("# HELP " + family.name + " " + family.help + "\n");
+            writer.write("# TYPE " + family.name + " " + family.type + "\n");
+
+            for (Map.Entry<String, Object> entry : family.series.entrySet()) {
+                final String labels = entry.getKey();
+                final Object metric = entry.getValue();
+
+                if (metric instanceof LatencyHistogram) {
+                    writeHistogram(writer, family.name, labels, (LatencyHistogram) metric);
+                } else if (metric instanceof LongAdder) {
+                    writeSample(writer, family.name, labels, Long.toString(((LongAdder) metric).sum()));
+                } else {
+                    writeSample(writer, family.name, labels, Long.toString(((LongSupplier) metric).getAsLong()));
+                }
+            }
+        }
+
+        writer.flush();
+    }
+
+    private Family family(final String name, final String help, final String type) {
+        final Family family = families.computeIfAbsent(name, familyName -> new Family(familyName, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+
+        return family;
+    }
+
+    private static void writeHistogram(final Writer writer, final String name, final String labels, final LatencyHistogram histogram) throws IOException {
+        final String prefix = labels.isEmpty() ? "" : labels + ",";
+
+        long cumulative = 0;
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            cumulative += histogram.getCount(i);
+            final long upperBound = histogram.getUpperBound(i);
+            final String le = (upperBound == Long.MAX_VALUE) ? "+Inf" : Double.toString(upperBound / 1e9);
+            writeSample(writer, name + "_bucket", prefix + "le=\"" + le + "\"", Long.toString(cumulative));
+        }
+
+        writeSample(writer, name + "_sum", labels, Double.toString(histogram.getSum() / 1e9));
+        writeSample(writer, name + "_count", labels, Long.toString(cumulative));
+    }
+
+    private static void writeSample(final Writer writer, final String name, final String labels, final String value) throws IOException {
+        writer.write(name);
+        if (!labels.isEmpty()) {
+            writer.write('{');
+            writer.write(labels);
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    private static String formatLabels(final String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name/value pairs");
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) builder.append(',');
+            builder.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+
+        return builder.toString();
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final ConcurrentMap<String, Object> series = new ConcurrentSkipListMap<>();
+
+        private Family(final String name, final String help, final String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
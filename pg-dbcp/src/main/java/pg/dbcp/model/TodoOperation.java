@@ -0,0 +1,66 @@
+package pg.dbcp.model;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.UUID;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoOperation {
+    public enum Type {
+        @SerializedName("create") CREATE,
+        @SerializedName("update") UPDATE,
+        @SerializedName("delete") DELETE
+    }
+
+    private Type op;
+    private UUID id;
+    private String title;
+    private String description;
+    private Boolean isDone;
+
+    public Type getOp() {
+        return op;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Boolean getDone() {
+        return isDone;
+    }
+
+    public String getDoneString() {
+        return (isDone == null) ? null : isDone.toString();
+    }
+
+    public Todo toTodo() {
+        final Todo todo = new Todo();
+        todo.setTitle(title);
+        todo.setDescription(description);
+        todo.setDone(isDone != null && isDone);
+        return todo;
+    }
+
+    @Override
+    public String toString() {
+        return "TodoOperation{" +
+                "op=" + op +
+                ", id=" + id +
+                ", title='" + title + '\'' +
+                ", description='" + description + '\'' +
+                ", isDone=" + isDone +
+                '}';
+    }
+}
@@ -0,0 +1,40 @@
+package pg.dbcp.model;
+
+import java.util.UUID;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoOperationResult {
+    private final TodoOperation.Type op;
+    private final UUID id;
+    private final boolean success;
+
+    public TodoOperationResult(final TodoOperation.Type op, final UUID id, final boolean success) {
+        this.op = op;
+        this.id = id;
+        this.success = success;
+    }
+
+    public TodoOperation.Type getOp() {
+        return op;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public String toString() {
+        return "TodoOperationResult{" +
+                "op=" + op +
+                ", id=" + id +
+                ", success=" + success +
+                '}';
+    }
+}
@@ -0,0 +1,158 @@
+package pg.dbcp.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pg.dbcp.metrics.MetricsRegistry;
+import pg.dbcp.model.Todo;
+import pg.dbcp.model.TodoOperation;
+import pg.dbcp.model.TodoOperationResult;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for lookups by id. Entries are dropped by this repository's own mutation methods,
+ * so a cached Todo is never older than the last write made through it. Misses are loaded from the primary,
+ * since a lagging replica could otherwise put a pre-write copy back into the cache right after an invalidation.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class CachingTodoRepository extends TodoRepository {
+    private final static Logger logger = LoggerFactory.getLogger(CachingTodoRepository.class);
+
+    private final Cache<UUID, Todo> cache;
+    // Bumped by every bulk delete once it has committed, before the cache is cleared
+    private final AtomicLong deletions = new AtomicLong();
+
+    public CachingTodoRepository(DataSource dataSource, long maximumSize, long expireAfterWriteSeconds) {
+        this(dataSource, dataSource, 0, maximumSize, expireAfterWriteSeconds);
+    }
+
+    public CachingTodoRepository(DataSource dataSource, DataSource readDataSource, long readYourWritesMillis, long maximumSize, long expireAfterWriteSeconds) {
+        super(dataSource, readDataSource, readYourWritesMillis);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+
+        MetricsRegistry.DEFAULT.counter("todo_cache_requests_total", "Cache lookups by result", () -> cache.stats().hitCount(), "result", "hit");
+        MetricsRegistry.DEFAULT.counter("todo_cache_requests_total", "Cache lookups by result", () -> cache.stats().missCount(), "result", "miss");
+        MetricsRegistry.DEFAULT.counter("todo_cache_evictions_total", "Entries evicted from the cache", () -> cache.stats().evictionCount());
+        MetricsRegistry.DEFAULT.gauge("todo_cache_size", "Estimated number of entries in the cache", cache::estimatedSize);
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    public long getCacheSize() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public Optional<Todo> getById(final String contextId, final UUID id) {
+        if (id == null) {
+            return super.getById(contextId, id);
+        }
+
+        // Misses are loaded atomically per key, so an invalidate racing with a load waits for it to finish. Clearing
+        // the cache passes over loads still in flight, so a load that overlapped a bulk delete drops what it cached.
+        final long deletionsBefore = deletions.get();
+        final Todo todo = cache.get(id, todoId -> getByIdFromPrimary(contextId, todoId).orElse(null));
+        if (deletions.get() != deletionsBefore) {
+            cache.invalidate(id);
+        }
+        logger.debug("[{}] | Cache lookup for Todo with Id: {} returned {}", contextId, id, todo);
+        return Optional.ofNullable(todo);
+    }
+
+    // Misses are read from the primary but not cached, since a bulk load cannot wait out a racing invalidate per key
+    @Override
+    public Map<UUID, Todo> getByIds(final String contextId, final Collection<UUID> ids) {
+        final Map<UUID, Todo> todos = new HashMap<>(cache.getAllPresent(ids));
+        if (todos.size() < ids.size()) {
+            final List<UUID> missing = new ArrayList<>(ids.size() - todos.size());
+            for (UUID id : ids) {
+                if (!todos.containsKey(id)) {
+                    missing.add(id);
+                }
+            }
+            todos.putAll(getByIdsFromPrimary(contextId, missing));
+        }
+
+        logger.debug("[{}] | Cache lookup for {} Todos by Id returned {}", contextId, ids.size(), todos.size());
+        return todos;
+    }
+
+    @Override
+    public boolean insertTodo(final String contextId, final Todo todo) {
+        final boolean inserted = super.insertTodo(contextId, todo);
+        if (todo != null && todo.getId() != null) {
+            cache.invalidate(todo.getId());
+        }
+
+        return inserted;
+    }
+
+    @Override
+    public boolean updateTodo(final String contextId, final UUID id, final String title, final String description, final String isDoneString) {
+        final boolean updated = super.updateTodo(contextId, id, title, description, isDoneString);
+        if (id != null) {
+            cache.invalidate(id);
+        }
+
+        return updated;
+    }
+
+    @Override
+    public void deleteAllTodos(final String contextId) {
+        super.deleteAllTodos(contextId);
+        deletions.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override
+    public boolean deleteTodoById(final String contextId, final UUID id) {
+        final boolean deleted = super.deleteTodoById(contextId, id);
+        if (id != null) {
+            cache.invalidate(id);
+        }
+
+        return deleted;
+    }
+
+    @Override
+    public int deleteByDone(final String contextId, final boolean isDone) {
+        final int deleted = super.deleteByDone(contextId, isDone);
+        deletions.incrementAndGet();
+        cache.asMap().values().removeIf(todo -> todo.isDone() == isDone);
+        return deleted;
+    }
+
+    @Override
+    public List<TodoOperationResult> executeBatch(final String contextId, final List<TodoOperation> operations) {
+        // A batch that failed on commit may still have been applied
+        try {
+            return super.executeBatch(contextId, operations);
+        } finally {
+            for (TodoOperation operation : operations) {
+                if (operation.getId() != null) {
+                    cache.invalidate(operation.getId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package pg.dbcp.repository;
+
+import pg.dbcp.metrics.MetricsRegistry;
+import pg.dbcp.model.Todo;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Gathers lookups by id that arrive within a short window into a single query. The first caller of a window waits
+ * out the window, or until the batch is full, and then runs the query for everyone who joined; the others just wait
+ * for their answer. No thread runs in the background.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+class IdBatcher {
+    private final static LongAdder BATCHES = MetricsRegistry.DEFAULT.counter("todo_get_by_id_batches_total", "Queries run for batched lookups by id");
+    private final static LongAdder BATCHED_IDS = MetricsRegistry.DEFAULT.counter("todo_get_by_id_batched_total", "Lookups by id answered by a batch");
+
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Function<Collection<UUID>, Map<UUID, Todo>> loader;
+    private Batch open;
+
+    IdBatcher(final long windowNanos, final int maxBatchSize, final Function<Collection<UUID>, Map<UUID, Todo>> loader) {
+        this.windowNanos = windowNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.loader = loader;
+    }
+
+    Optional<Todo> get(final UUID id) {
+        final Batch batch;
+        final CompletableFuture<Optional<Todo>> future;
+        final boolean leader;
+
+        synchronized (this) {
+            leader = (open == null);
+            if (leader) {
+                open = new Batch(Thread.currentThread());
+            }
+
+            batch = open;
+            future = batch.waiters.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (batch.waiters.size() >= maxBatchSize) {
+                open = null;
+                batch.full = true;
+                LockSupport.unpark(batch.leader);
+            }
+        }
+
+        if (leader) {
+            run(batch);
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private void run(final Batch batch) {
+        final long deadline = System.nanoTime() + windowNanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !isFull(batch)) {
+            LockSupport.parkNanos(this, remaining);
+        }
+
+        synchronized (this) {
+            if (open == batch) {
+                open = null;
+            }
+        }
+
+        BATCHES.increment();
+        BATCHED_IDS.add(batch.waiters.size());
+        try {
+            final Map<UUID, Todo> found = loader.apply(batch.waiters.keySet());
+            batch.waiters.forEach((id, future) -> future.complete(Optional.ofNullable(found.get(id))));
+        } catch (RuntimeException | Error e) {
+            batch.waiters.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private synchronized boolean isFull(final Batch batch) {
+        return batch.full;
+    }
+
+    // Waiters only change while the batch is open, and the batch is only read after it has been closed under the lock
+    private static class Batch {
+        private final Thread leader;
+        private final Map<UUID, CompletableFuture<Optional<Todo>>> waiters = new HashMap<>();
+        private boolean full;
+
+        Batch(final Thread leader) {
+            this.leader = leader;
+        }
+    }
+}
@@ -1,17 +1,37 @@
 package pg.dbcp.repository;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pg.dbcp.metrics.LatencyHistogram;
+import pg.dbcp.metrics.MetricsRegistry;
 import pg.dbcp.model.Todo;
+import pg.dbcp.model.TodoOperation;
+import pg.dbcp.model.TodoOperationResult;
 
 import javax.sql.DataSource;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * @author Abhishek Gupta
@@ -19,44 +39,120 @@ import java.util.Optional;
  */
 public class TodoRepository {
     private final static Logger logger = LoggerFactory.getLogger(TodoRepository.class);
+    private final static int FETCH_SIZE = 500;
+
+    private final static LatencyHistogram PRIMARY_WAIT_TIMER = poolWaitTimer("primary");
+    private final static LatencyHistogram REPLICA_WAIT_TIMER = poolWaitTimer("replica");
+    private final static LongAdder PRIMARY_BORROW_FAILURES = borrowFailures("primary");
+    private final static LongAdder REPLICA_BORROW_FAILURES = borrowFailures("replica");
+    private final static LatencyHistogram GET_BY_ID_TIMER = timer("getById");
+    private final static LatencyHistogram GET_BY_IDS_TIMER = timer("getByIds");
+    private final static LatencyHistogram STREAM_TIMER = timer("stream");
+    private final static LatencyHistogram INSERT_TIMER = timer("insertTodo");
+    private final static LatencyHistogram UPDATE_TIMER = timer("updateTodo");
+    private final static LatencyHistogram DELETE_ALL_TIMER = timer("deleteAllTodos");
+    private final static LatencyHistogram DELETE_TIMER = timer("deleteTodoById");
+    private final static LatencyHistogram DELETE_BY_DONE_TIMER = timer("deleteByDone");
+    private final static LatencyHistogram BATCH_TIMER = timer("executeBatch");
+
     private final DataSource dataSource;
+    private final DataSource readDataSource;
+    private final long readYourWritesMillis;
+    private final Cache<String, Boolean> recentWriters;
+    private final AtomicLong version = new AtomicLong();
+    private volatile IdBatcher idBatcher;
 
     public TodoRepository(DataSource dataSource) {
+        this(dataSource, dataSource, 0);
+    }
+
+    /**
+     * Reads go to readDataSource and writes to dataSource. When readYourWritesMillis is positive, writes hand out
+     * a token that the client sends back with its later requests, and the reads of a request whose token is
+     * younger than that many milliseconds go to dataSource instead, so the writer never observes replication lag.
+     */
+    public TodoRepository(DataSource dataSource, DataSource readDataSource, long readYourWritesMillis) {
         this.dataSource = dataSource;
+        this.readDataSource = readDataSource;
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.recentWriters = (readDataSource == dataSource || readYourWritesMillis <= 0) ? null : Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesMillis, TimeUnit.MILLISECONDS)
+                .build();
     }
 
     public List<Todo> getAll(final String contextId) {
-        final String sql = "select * from todos";
         final List<Todo> todos = new ArrayList<>();
+        streamAll(contextId, null, 0, todos::add);
+        return todos;
+    }
+
+    public List<Todo> getByDone(final String contextId, final boolean isDone) {
+        final List<Todo> todos = new ArrayList<>();
+        streamByDone(contextId, isDone, null, 0, todos::add);
+        return todos;
+    }
+
+    public int streamAll(final String contextId, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        final String sql = pageSql("select * from todos", false, after, limit);
         logger.info("[{}] | Retrieving Todos from DB", contextId);
+        final int count = stream(contextId, sql, after, limit, consumer);
+        logger.info("[{}] | Found {} Todos in DB", contextId, count);
+        return count;
+    }
 
-        try (Connection connection = dataSource.getConnection()) {
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                try (ResultSet resultSet = statement.executeQuery()) {
-                    while (resultSet.next()) {
-                        final String id = resultSet.getString("id");
-                        final String title = resultSet.getString("title");
-                        final String description = resultSet.getString("description");
-                        final boolean isDone = resultSet.getBoolean("isDone");
+    public int streamByDone(final String contextId, final boolean isDone, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        // Literal predicates so that the planner can match the partial indexes created by TodoDataStore
+        final String select = isDone ? "select * from todos where isDone = true" : "select * from todos where isDone = false";
+        final String sql = pageSql(select, true, after, limit);
+        logger.info("[{}] | Retrieving Todos with isDone: {} from DB", contextId, isDone);
+        final int count = stream(contextId, sql, after, limit, consumer);
+        logger.info("[{}] | Found {} Todos with isDone: {} in DB", contextId, count, isDone);
+        return count;
+    }
 
-                        final Todo todo = new Todo(id);
-                        todo.setTitle(title);
-                        todo.setDescription(description);
-                        todo.setDone(isDone);
+    /**
+     * Counts the writes made through this repository, so it only tracks the store when this is its only writer.
+     * Every write bumps it after it has committed, and a reader that takes the version before reading never sees
+     * data older than it. A replica can lag behind the version, so there is none (-1) while reads go to one.
+     */
+    public long getVersion() {
+        return (readDataSource == dataSource) ? version.get() : -1;
+    }
 
-                        todos.add(todo);
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            logger.error("[{}] | SQL Exception occurred", contextId, e);
+    /**
+     * Gathers lookups by id from concurrent callers within windowMicros, up to maxBatchSize of them, into one query.
+     * Callers that must read their own writes are not batched.
+     */
+    public void batchLookupsById(final long windowMicros, final int maxBatchSize) {
+        idBatcher = (windowMicros <= 0) ? null
+                : new IdBatcher(TimeUnit.MICROSECONDS.toNanos(windowMicros), maxBatchSize, ids -> findByIds(null, ids, false));
+    }
+
+    public Optional<Todo> getById(final String contextId, final UUID id) {
+        final IdBatcher batcher = idBatcher;
+        if (batcher != null && id != null && !isRecentWriter(contextId)) {
+            return batcher.get(id);
         }
 
-        logger.info("[{}] | Found {} Todos in DB", contextId, todos.size());
-        return todos;
+        return findById(contextId, id, false);
     }
 
-    public Optional<Todo> getById(final String contextId, final String id) {
+    /**
+     * Looks up all the given ids with a single query. Ids that match no Todo are left out of the result.
+     */
+    public Map<UUID, Todo> getByIds(final String contextId, final Collection<UUID> ids) {
+        return findByIds(contextId, ids, false);
+    }
+
+    protected Optional<Todo> getByIdFromPrimary(final String contextId, final UUID id) {
+        return findById(contextId, id, true);
+    }
+
+    protected Map<UUID, Todo> getByIdsFromPrimary(final String contextId, final Collection<UUID> ids) {
+        return findByIds(contextId, ids, true);
+    }
+
+    private Optional<Todo> findById(final String contextId, final UUID id, final boolean fromPrimary) {
         if (id == null) {
             logger.info("[{}] | Nothing to retrieve", contextId);
             return Optional.empty();
@@ -66,28 +162,21 @@ public class TodoRepository {
         final List<Todo> todos = new ArrayList<>();
         logger.info("[{}] | Retrieving Todo with Id: {} from DB", contextId, id);
 
-        try (Connection connection = dataSource.getConnection()) {
+        final long start = System.nanoTime();
+        try (Connection connection = fromPrimary ? getConnection() : getReadConnection(contextId)) {
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, id);
+                statement.setObject(1, id);
 
                 try (ResultSet resultSet = statement.executeQuery()) {
                     while (resultSet.next()) {
-                        final String todoId = resultSet.getString("id");
-                        final String title = resultSet.getString("title");
-                        final String description = resultSet.getString("description");
-                        final boolean isDone = resultSet.getBoolean("isDone");
-
-                        final Todo todo = new Todo(todoId);
-                        todo.setTitle(title);
-                        todo.setDescription(description);
-                        todo.setDone(isDone);
-
-                        todos.add(todo);
+                        todos.add(toTodo(resultSet));
                     }
                 }
             }
         } catch (SQLException e) {
             logger.error("[{}] | SQL Exception occurred", contextId, e);
+        } finally {
+            GET_BY_ID_TIMER.record(System.nanoTime() - start);
         }
 
         if (!todos.isEmpty()) {
@@ -99,50 +188,82 @@ public class TodoRepository {
         return Optional.empty();
     }
 
+    private Map<UUID, Todo> findByIds(final String contextId, final Collection<UUID> ids, final boolean fromPrimary) {
+        final Map<UUID, Todo> todos = new HashMap<>();
+        if (ids.isEmpty()) {
+            return todos;
+        }
+
+        final String sql = "select * from todos where id = any(?)";
+        logger.info("[{}] | Retrieving {} Todos by Id from DB", contextId, ids.size());
+
+        final long start = System.nanoTime();
+        try (Connection connection = fromPrimary ? getConnection() : getReadConnection(contextId)) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                final Array array = connection.createArrayOf("uuid", ids.toArray());
+                statement.setArray(1, array);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        final Todo todo = toTodo(resultSet);
+                        todos.put(todo.getId(), todo);
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("[{}] | SQL Exception occurred", contextId, e);
+        } finally {
+            GET_BY_IDS_TIMER.record(System.nanoTime() - start);
+        }
+
+        logger.info("[{}] | Found {} of {} Todos by Id in DB", contextId, todos.size(), ids.size());
+        return todos;
+    }
+
     public boolean insertTodo(final String contextId, final Todo todo) {
         if (todo == null) {
             logger.info("[{}] | Nothing to insert", contextId);
             return false;
         }
 
-        final String id = todo.getId();
-        final Optional<Todo> todoById = getById(contextId, id);
-        if (todoById.isPresent()) {
-            logger.info("[{}] | Todo with Id: {} already present in DB", contextId, id);
-            return false;
-        }
-
-        final String sql = "insert into todos (id, title, description, isDone) values (?,?,?,?)";
+        final UUID id = todo.getId();
+        final String sql = "insert into todos (id, title, description, isDone) values (?,?,?,?) on conflict do nothing";
         logger.info("[{}] | Inserting Todo with Id: {} into DB", contextId, id);
 
-        try (Connection connection = dataSource.getConnection()) {
+        final int inserted;
+        final long start = System.nanoTime();
+        try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, id);
+                statement.setObject(1, id);
                 statement.setString(2, todo.getTitle());
                 statement.setString(3, todo.getDescription());
                 statement.setBoolean(4, todo.isDone());
-                statement.executeUpdate();
+                inserted = statement.executeUpdate();
             }
         } catch (SQLException e) {
             logger.error("[{}] | SQL Exception occurred", contextId, e);
             return false;
+        } finally {
+            INSERT_TIMER.record(System.nanoTime() - start);
+        }
+
+        if (inserted == 0) {
+            logger.info("[{}] | Todo with Id: {} already present in DB", contextId, id);
+            return false;
         }
 
+        recordWrite(contextId);
         return true;
     }
 
-    public boolean updateTodo(final String contextId, final String id, final String title, final String description, final String isDoneString) {
+    public boolean updateTodo(final String contextId, final UUID id, final String title, final String description, final String isDoneString) {
         if ((id == null) || (title == null && description == null && isDoneString == null)) {
             logger.info("[{}] | Nothing to update", contextId);
             return false;
         }
 
-        final Optional<Todo> todoById = getById(contextId, id);
-        if (!todoById.isPresent()) {
-            logger.info("[{}] | Todo with Id: {} not present in DB", contextId, id);
-            return false;
-        }
-
         boolean commaRequired = false;
 
         final StringBuilder sqlBuilder = new StringBuilder("update todos set");
@@ -167,20 +288,31 @@ public class TodoRepository {
         sqlBuilder.append(" where id = ?");
         logger.info("[{}] | Updating Todo with Id: {} in DB", contextId, id);
 
-        try (Connection connection = dataSource.getConnection()) {
+        final int updated;
+        final long start = System.nanoTime();
+        try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(sqlBuilder.toString())) {
                 int index = 1;
                 if (title != null) statement.setString(index++, title);
                 if (description != null) statement.setString(index++, description);
                 if (isDoneString != null) statement.setBoolean(index++, Boolean.valueOf(isDoneString));
-                statement.setString(index, id);
-                logger.debug(statement.toString());
-                statement.executeUpdate();
+                statement.setObject(index, id);
+                logger.debug("[{}] | {}", contextId, statement);
+                updated = statement.executeUpdate();
             }
         } catch (SQLException e) {
             logger.error("[{}] | SQL Exception occurred", contextId, e);
+            return false;
+        } finally {
+            UPDATE_TIMER.record(System.nanoTime() - start);
+        }
+
+        if (updated == 0) {
+            logger.info("[{}] | Todo with Id: {} not present in DB", contextId, id);
+            return false;
         }
 
+        recordWrite(contextId);
         return true;
     }
 
@@ -188,28 +320,334 @@ public class TodoRepository {
         final String sql = "delete from todos";
         logger.info("[{}] | Deleting All Todos from DB", contextId);
 
-        try (Connection connection = dataSource.getConnection()) {
+        final long start = System.nanoTime();
+        try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
                 statement.executeUpdate();
             }
+            recordWrite(contextId);
         } catch (SQLException e) {
             logger.error("[{}] | SQL Exception occurred", contextId, e);
+        } finally {
+            DELETE_ALL_TIMER.record(System.nanoTime() - start);
         }
     }
 
-    public boolean deleteTodoById(final String contextId, final String id) {
+    public boolean deleteTodoById(final String contextId, final UUID id) {
+        if (id == null) {
+            logger.info("[{}] | Nothing to delete", contextId);
+            return false;
+        }
+
         final String sql = "delete from todos where id = ?";
         logger.info("[{}] | Deleting Todo with Id: {} from DB", contextId, id);
 
-        try (Connection connection = dataSource.getConnection()) {
+        final int deleted;
+        final long start = System.nanoTime();
+        try (Connection connection = getConnection()) {
             try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setString(1, id);
-                statement.executeUpdate();
+                statement.setObject(1, id);
+                deleted = statement.executeUpdate();
             }
         } catch (SQLException e) {
             logger.error("[{}] | SQL Exception occurred", contextId, e);
+            return false;
+        } finally {
+            DELETE_TIMER.record(System.nanoTime() - start);
+        }
+
+        if (deleted == 0) {
+            logger.info("[{}] | Todo with Id: {} not present in DB", contextId, id);
+            return false;
         }
 
+        recordWrite(contextId);
         return true;
     }
+
+    public int deleteByDone(final String contextId, final boolean isDone) {
+        final String sql = isDone ? "delete from todos where isDone = true" : "delete from todos where isDone = false";
+        logger.info("[{}] | Deleting Todos with isDone: {} from DB", contextId, isDone);
+
+        int deleted = 0;
+        final long start = System.nanoTime();
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                deleted = statement.executeUpdate();
+            }
+            recordWrite(contextId);
+        } catch (SQLException e) {
+            logger.error("[{}] | SQL Exception occurred", contextId, e);
+        } finally {
+            DELETE_BY_DONE_TIMER.record(System.nanoTime() - start);
+        }
+
+        logger.info("[{}] | Deleted {} Todos with isDone: {} from DB", contextId, deleted, isDone);
+        return deleted;
+    }
+
+    /**
+     * @throws TodoStoreException if the database failed the batch
+     */
+    public List<TodoOperationResult> executeBatch(final String contextId, final List<TodoOperation> operations) {
+        final String insertSql = "insert into todos (id, title, description, isDone) values (?,?,?,?) on conflict do nothing";
+        final String updateSql = "update todos set title = coalesce(?, title), description = coalesce(?, description), isDone = coalesce(?, isDone) where id = ?";
+        final String deleteSql = "delete from todos where id = ?";
+        logger.info("[{}] | Executing batch of {} operations in DB", contextId, operations.size());
+
+        final UUID[] ids = new UUID[operations.size()];
+        final boolean[] succeeded = new boolean[operations.size()];
+        final List<Integer> inserts = new ArrayList<>();
+        final List<Integer> updates = new ArrayList<>();
+        final List<Integer> deletes = new ArrayList<>();
+        final Set<UUID> pendingIds = new HashSet<>();
+
+        final long start = System.nanoTime();
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(insertSql);
+                 PreparedStatement update = connection.prepareStatement(updateSql);
+                 PreparedStatement delete = connection.prepareStatement(deleteSql)) {
+                for (int i = 0; i < operations.size(); i++) {
+                    final TodoOperation operation = operations.get(i);
+                    // Like updateTodo, an update that sets nothing fails instead of matching the row
+                    if (operation.getOp() == TodoOperation.Type.UPDATE && operation.getTitle() == null
+                            && operation.getDescription() == null && operation.getDone() == null) {
+                        ids[i] = operation.getId();
+                        continue;
+                    }
+
+                    // Pending statements run grouped by kind, which only matches running them in sequence while no
+                    // two of them touch the same id. Creates always get fresh ids, so only updates and deletes can.
+                    if (operation.getId() != null && operation.getOp() != TodoOperation.Type.CREATE && !pendingIds.add(operation.getId())) {
+                        executeBatches(insert, update, delete, inserts, updates, deletes, succeeded);
+                        pendingIds.clear();
+                        pendingIds.add(operation.getId());
+                    }
+
+                    switch (operation.getOp()) {
+                        case CREATE:
+                            final Todo todo = operation.toTodo();
+                            ids[i] = todo.getId();
+                            insert.setObject(1, todo.getId());
+                            insert.setString(2, todo.getTitle());
+                            insert.setString(3, todo.getDescription());
+                            insert.setBoolean(4, todo.isDone());
+                            insert.addBatch();
+                            inserts.add(i);
+                            break;
+                        case UPDATE:
+                            ids[i] = operation.getId();
+                            update.setString(1, operation.getTitle());
+                            update.setString(2, operation.getDescription());
+                            update.setObject(3, operation.getDone(), Types.BOOLEAN);
+                            update.setObject(4, operation.getId());
+                            update.addBatch();
+                            updates.add(i);
+                            break;
+                        case DELETE:
+                            ids[i] = operation.getId();
+                            delete.setObject(1, operation.getId());
+                            delete.addBatch();
+                            deletes.add(i);
+                            break;
+                    }
+                }
+
+                executeBatches(insert, update, delete, inserts, updates, deletes, succeeded);
+                connection.commit();
+                // Versions must only move when the data did, or list tags and cached bodies are dropped for nothing
+                for (boolean changed : succeeded) {
+                    if (changed) {
+                        recordWrite(contextId);
+                        break;
+                    }
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("[{}] | SQL Exception occurred", contextId, e);
+            throw new TodoStoreException("Unable to execute batch of " + operations.size() + " operations", e);
+        } finally {
+            BATCH_TIMER.record(System.nanoTime() - start);
+        }
+
+        final List<TodoOperationResult> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            results.add(new TodoOperationResult(operations.get(i).getOp(), ids[i], succeeded[i]));
+        }
+
+        logger.info("[{}] | Executed batch of {} operations in DB", contextId, results.size());
+        return results;
+    }
+
+    private Connection getConnection() throws SQLException {
+        return borrow(dataSource, PRIMARY_WAIT_TIMER, PRIMARY_BORROW_FAILURES);
+    }
+
+    private Connection getReadConnection(final String contextId) throws SQLException {
+        if (readDataSource == dataSource || isRecentWriter(contextId)) {
+            return getConnection();
+        }
+
+        return borrow(readDataSource, REPLICA_WAIT_TIMER, REPLICA_BORROW_FAILURES);
+    }
+
+    /**
+     * @return a token to give the client once its write has committed, or null when reads never lag behind writes.
+     *         It is the time of the write, so that it holds across every instance writing to the same primary.
+     */
+    public String writeToken() {
+        return (recentWriters == null) ? null : Long.toString(System.currentTimeMillis());
+    }
+
+    /**
+     * Sends the reads made with contextId to the primary if writeToken is one handed out within the read-your-writes
+     * window. Tokens that are malformed or from the future are ignored.
+     */
+    public void readYourWrites(final String contextId, final String writeToken) {
+        if (recentWriters == null || contextId == null || writeToken == null) {
+            return;
+        }
+
+        final long writtenAt;
+        try {
+            writtenAt = Long.parseLong(writeToken);
+        } catch (NumberFormatException e) {
+            logger.warn("[{}] | Ignoring malformed write token: {}", contextId, writeToken);
+            return;
+        }
+
+        final long age = System.currentTimeMillis() - writtenAt;
+        if (age >= 0 && age < readYourWritesMillis) {
+            recentWriters.put(contextId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @return whether contextId wrote, or sent back the token of a write, within the read-your-writes window, so that
+     *         its reads go to the primary
+     */
+    public boolean isRecentWriter(final String contextId) {
+        return recentWriters != null && contextId != null && recentWriters.getIfPresent(contextId) != null;
+    }
+
+    private void recordWrite(final String contextId) {
+        version.incrementAndGet();
+        if (recentWriters != null && contextId != null) {
+            recentWriters.put(contextId, Boolean.TRUE);
+        }
+    }
+
+    private static Connection borrow(final DataSource source, final LatencyHistogram waitTimer, final LongAdder borrowFailures) throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return source.getConnection();
+        } catch (SQLException e) {
+            borrowFailures.increment();
+            throw e;
+        } finally {
+            waitTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    private static void executeBatches(final PreparedStatement insert, final PreparedStatement update, final PreparedStatement delete,
+                                       final List<Integer> inserts, final List<Integer> updates, final List<Integer> deletes,
+                                       final boolean[] succeeded) throws SQLException {
+        markSucceeded(insert.executeBatch(), inserts, succeeded);
+        markSucceeded(update.executeBatch(), updates, succeeded);
+        markSucceeded(delete.executeBatch(), deletes, succeeded);
+        inserts.clear();
+        updates.clear();
+        deletes.clear();
+    }
+
+    private static void markSucceeded(final int[] counts, final List<Integer> positions, final boolean[] succeeded) {
+        for (int i = 0; i < counts.length; i++) {
+            succeeded[positions.get(i)] = (counts[i] > 0) || (counts[i] == Statement.SUCCESS_NO_INFO);
+        }
+    }
+
+    /**
+     * @throws TodoStoreException if the Todos could not be read in full, since some may already have been consumed
+     */
+    private int stream(final String contextId, final String sql, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        int count = 0;
+
+        final long start = System.nanoTime();
+        try (Connection connection = getReadConnection(contextId)) {
+            // The driver only fetches through a cursor when auto-commit is off
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                if (after != null) statement.setObject(index++, after);
+                if (limit > 0) statement.setInt(index, limit);
+                statement.setFetchSize(FETCH_SIZE);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(toTodo(resultSet));
+                        count++;
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("[{}] | SQL Exception occurred", contextId, e);
+            throw new TodoStoreException("Unable to read Todos after " + count + " rows", e);
+        } finally {
+            STREAM_TIMER.record(System.nanoTime() - start);
+        }
+
+        return count;
+    }
+
+    // Keyset paging: the id index seeks straight past the cursor, so deep pages cost the same as the first one
+    private static String pageSql(final String select, final boolean hasWhere, final UUID after, final int limit) {
+        if (after == null && limit <= 0) {
+            return select;
+        }
+
+        final StringBuilder sqlBuilder = new StringBuilder(select);
+        if (after != null) {
+            sqlBuilder.append(hasWhere ? " and" : " where").append(" id > ?");
+        }
+
+        sqlBuilder.append(" order by id");
+        if (limit > 0) {
+            sqlBuilder.append(" limit ?");
+        }
+
+        return sqlBuilder.toString();
+    }
+
+    private static LatencyHistogram poolWaitTimer(final String pool) {
+        return MetricsRegistry.DEFAULT.histogram("todo_pool_wait_seconds", "Time spent waiting to borrow a connection from the pool", "pool", pool);
+    }
+
+    private static LongAdder borrowFailures(final String pool) {
+        return MetricsRegistry.DEFAULT.counter("todo_pool_borrow_failures_total", "Connection borrows that failed", "pool", pool);
+    }
+
+    private static LatencyHistogram timer(final String method) {
+        return MetricsRegistry.DEFAULT.histogram("todo_repository_duration_seconds", "Time spent in repository methods", "method", method);
+    }
+
+    private static Todo toTodo(final ResultSet resultSet) throws SQLException {
+        final UUID id = (UUID) resultSet.getObject("id");
+        final String title = resultSet.getString("title");
+        final String description = resultSet.getString("description");
+        final boolean isDone = resultSet.getBoolean("isDone");
+
+        final Todo todo = new Todo(id);
+        todo.setTitle(title);
+        todo.setDescription(description);
+        todo.setDone(isDone);
+        return todo;
+    }
 }
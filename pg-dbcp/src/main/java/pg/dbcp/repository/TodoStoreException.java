@@ -0,0 +1,16 @@
+package pg.dbcp.repository;
+
+/**
+ * Thrown when the database fails a batch or a list part way, so that neither passes for a client error nor a partial
+ * list for the whole.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoStoreException extends RuntimeException {
+    private final static long serialVersionUID = 1L;
+
+    public TodoStoreException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
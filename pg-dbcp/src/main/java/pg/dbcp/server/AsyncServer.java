@@ -0,0 +1,51 @@
+package pg.dbcp.server;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.servlet.SparkApplication;
+
+import javax.servlet.DispatcherType;
+import java.util.EnumSet;
+
+/**
+ * Serves the Spark routes from a Jetty server of our own, with Spark running as a filter, because Spark's embedded
+ * server always runs routes on the thread that read the request. Unlike Spark's server this one is started
+ * synchronously, so Spark.awaitInitialization must not be used with it.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class AsyncServer {
+    private final static Logger logger = LoggerFactory.getLogger(AsyncServer.class);
+
+    public static boolean start(final int port, final int maxThreads, final int workerThreads, final int maxQueuedRequests,
+                                final SparkApplication application) {
+        final Server server = (maxThreads > 0) ? new Server(new QueuedThreadPool(maxThreads)) : new Server();
+        final ServerConnector connector = new ServerConnector(server);
+        connector.setHost("0.0.0.0");
+        connector.setPort(port);
+        server.setConnectors(new Connector[]{connector});
+
+        final ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        final FilterHolder filter = new FilterHolder(new AsyncSparkFilter(application, workerThreads, maxQueuedRequests));
+        filter.setAsyncSupported(true);
+        context.addFilter(filter, "/*", EnumSet.of(DispatcherType.REQUEST));
+        server.setHandler(context);
+
+        try {
+            server.start();
+        } catch (Exception e) {
+            logger.error("Unable to start server", e);
+            return false;
+        }
+
+        logger.info("Listening on port {}", port);
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+package pg.dbcp.server;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pg.dbcp.metrics.MetricsRegistry;
+import spark.servlet.SparkApplication;
+import spark.servlet.SparkFilter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs Spark's routes on a dedicated pool of workers instead of on the Jetty thread that read the request. The Jetty
+ * thread suspends the request and goes back to the connections, so a request waiting its turn holds a queue slot
+ * rather than a thread. The workers are sized to the connection pool and act as the semaphore on database work: at
+ * most one request per connection runs at a time, and none of them waits inside the pool for a connection.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class AsyncSparkFilter extends SparkFilter {
+    private final static Logger logger = LoggerFactory.getLogger(AsyncSparkFilter.class);
+
+    // Spark hands unmatched requests to the rest of the chain when it runs inside a container, so answer them the way
+    // its embedded server does
+    private final static FilterChain NOT_FOUND = (request, response) -> {
+        ((HttpServletResponse) response).setStatus(HttpStatus.NOT_FOUND_404);
+        response.setContentType("text/html; charset=utf-8");
+        response.getWriter().write("<html><body><h2>404 Not found</h2></body></html>");
+    };
+
+    private final SparkApplication application;
+    private final ThreadPoolExecutor workers;
+    private final LongAdder rejected;
+
+    public AsyncSparkFilter(SparkApplication application, int workerThreads, int maxQueuedRequests) {
+        this.application = application;
+
+        final AtomicInteger count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueuedRequests), runnable -> {
+            final Thread thread = new Thread(runnable, "request-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.rejected = MetricsRegistry.DEFAULT.counter("todo_requests_rejected_total", "Requests turned away because the queue was full");
+        MetricsRegistry.DEFAULT.gauge("todo_requests_queued", "Requests waiting for a worker", () -> workers.getQueue().size());
+        MetricsRegistry.DEFAULT.gauge("todo_requests_running", "Requests being handled by a worker", workers::getActiveCount);
+        logger.info("Handling requests on {} workers with up to {} queued", workerThreads, maxQueuedRequests);
+    }
+
+    @Override
+    protected SparkApplication getApplication(final FilterConfig filterConfig) {
+        return application;
+    }
+
+    @Override
+    public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain) {
+        final AsyncContext asyncContext = request.startAsync(new DetachedRequest((HttpServletRequest) request), response);
+        // The queue bounds how long a request can wait, so the container must not time it out underneath a worker
+        asyncContext.setTimeout(0);
+
+        try {
+            workers.execute(() -> handle(asyncContext));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            ((HttpServletResponse) response).setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+            asyncContext.complete();
+        }
+    }
+
+    private void handle(final AsyncContext asyncContext) {
+        try {
+            super.doFilter(asyncContext.getRequest(), asyncContext.getResponse(), NOT_FOUND);
+        } catch (IOException | ServletException | RuntimeException e) {
+            logger.error("Unable to handle request", e);
+            final HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+            }
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * Jetty resets the paths of a request when the thread that received it leaves the servlet context, which can
+     * happen while a worker is still routing it, so they are captured up front.
+     */
+    private static class DetachedRequest extends HttpServletRequestWrapper {
+        private final String contextPath;
+        private final String servletPath;
+        private final String pathInfo;
+
+        DetachedRequest(final HttpServletRequest request) {
+            super(request);
+            this.contextPath = request.getContextPath();
+            this.servletPath = request.getServletPath();
+            this.pathInfo = request.getPathInfo();
+        }
+
+        @Override
+        public String getContextPath() {
+            return contextPath;
+        }
+
+        @Override
+        public String getServletPath() {
+            return servletPath;
+        }
+
+        @Override
+        public String getPathInfo() {
+            return pathInfo;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package pg.dbcp.service;
+
+import pg.dbcp.metrics.MetricsRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers asking for the same key share one load instead of each running their own. The first caller
+ * runs the load and the others wait for its result, so a caller may be answered by a load that started shortly before
+ * it arrived. Nothing is kept once the load finishes.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder shared;
+
+    public SingleFlight(final String operation) {
+        this.shared = MetricsRegistry.DEFAULT.counter("todo_reads_coalesced_total",
+                "Reads answered by a load already in flight for another request", "operation", operation);
+    }
+
+    public V load(final K key, final Supplier<V> loader) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        // Stop sharing the load before publishing its result, so late callers never pick up a finished load
+        try {
+            final V value = loader.get();
+            inFlight.remove(key, future);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+}
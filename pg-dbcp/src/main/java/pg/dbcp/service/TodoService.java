@@ -1,37 +1,106 @@
 package pg.dbcp.service;
 
 import pg.dbcp.model.Todo;
+import pg.dbcp.model.TodoOperation;
+import pg.dbcp.model.TodoOperationResult;
 import pg.dbcp.repository.TodoRepository;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
+ * With coalescing on, concurrent identical reads share one repository call: lookups by id, whole lists and pages.
+ * Only reads made at the same store version share a call, so a caller never joins a load that may have started
+ * before a write it has seen. With a replica there is no version, so callers that sent back the token of a recent
+ * write read on their own instead: a shared load runs under the context of the caller that started it and may have
+ * gone to the replica. Unpaged streams are never coalesced, because sharing them would mean holding the whole table
+ * in memory.
+ *
  * @author Abhishek Gupta
  *         https://github.com/abhigupta912
  */
 public class TodoService {
     private final TodoRepository todoRepository;
+    private final SingleFlight<List<Object>, Optional<Todo>> byIdFlights;
+    private final SingleFlight<List<Object>, List<Todo>> listFlights;
 
     public TodoService(TodoRepository todoRepository) {
+        this(todoRepository, false);
+    }
+
+    public TodoService(TodoRepository todoRepository, boolean coalesceReads) {
         this.todoRepository = todoRepository;
+        this.byIdFlights = coalesceReads ? new SingleFlight<>("getById") : null;
+        this.listFlights = coalesceReads ? new SingleFlight<>("list") : null;
+    }
+
+    /**
+     * @return the token that lets the client read this write from its later requests, or null when it needs none
+     */
+    public String writeToken() {
+        return todoRepository.writeToken();
+    }
+
+    public void readYourWrites(final String contextId, final String writeToken) {
+        todoRepository.readYourWrites(contextId, writeToken);
+    }
+
+    /**
+     * @return the version of the store, or -1 when it has none
+     */
+    public long getVersion() {
+        return todoRepository.getVersion();
     }
 
     public List<Todo> getAllTodos(final String contextId) {
-        return todoRepository.getAll(contextId);
+        return list(contextId, () -> todoRepository.getAll(contextId), "all");
     }
 
     public List<Todo> getPendingTodos(final String contextId) {
-        return getAllTodos(contextId).stream().filter(todo -> !todo.isDone()).collect(Collectors.toList());
+        return list(contextId, () -> todoRepository.getByDone(contextId, false), "pending");
     }
 
     public List<Todo> getCompletedTodos(final String contextId) {
-        return getAllTodos(contextId).stream().filter(todo -> todo.isDone()).collect(Collectors.toList());
+        return list(contextId, () -> todoRepository.getByDone(contextId, true), "completed");
+    }
+
+    public int streamAllTodos(final String contextId, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        if (limit <= 0 || !coalesces(listFlights, contextId)) {
+            return todoRepository.streamAll(contextId, after, limit, consumer);
+        }
+
+        return page(contextId, todos -> todoRepository.streamAll(contextId, after, limit, todos::add), consumer, "all", after, limit);
     }
 
-    public Todo getTodoById(final String contextId, final String id) {
-        final Optional<Todo> todoById = todoRepository.getById(contextId, id);
+    public int streamPendingTodos(final String contextId, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        if (limit <= 0 || !coalesces(listFlights, contextId)) {
+            return todoRepository.streamByDone(contextId, false, after, limit, consumer);
+        }
+
+        return page(contextId, todos -> todoRepository.streamByDone(contextId, false, after, limit, todos::add), consumer, "pending", after, limit);
+    }
+
+    public int streamCompletedTodos(final String contextId, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        if (limit <= 0 || !coalesces(listFlights, contextId)) {
+            return todoRepository.streamByDone(contextId, true, after, limit, consumer);
+        }
+
+        return page(contextId, todos -> todoRepository.streamByDone(contextId, true, after, limit, todos::add), consumer, "completed", after, limit);
+    }
+
+    public Todo getTodoById(final String contextId, final UUID id) {
+        final Optional<Todo> todoById = (id == null || !coalesces(byIdFlights, contextId))
+                ? todoRepository.getById(contextId, id)
+                : byIdFlights.load(Arrays.asList(todoRepository.getVersion(), id), () -> todoRepository.getById(contextId, id));
         if (todoById.isPresent()) {
             return todoById.get();
         } else {
@@ -39,11 +108,26 @@ public class TodoService {
         }
     }
 
+    /**
+     * @return the Todos in the order of the given ids, with null in place of each id that matches none
+     */
+    public List<Todo> getTodosByIds(final String contextId, final List<UUID> ids) {
+        final Set<UUID> distinctIds = new HashSet<>(ids);
+        distinctIds.remove(null);
+        final Map<UUID, Todo> todos = todoRepository.getByIds(contextId, distinctIds);
+
+        final List<Todo> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            result.add((id == null) ? null : todos.get(id));
+        }
+        return result;
+    }
+
     public boolean addTodo(final String contextId, final Todo todo) {
         return todoRepository.insertTodo(contextId, todo);
     }
 
-    public boolean updateTodo(final String contextId, final String id, final String title, final String description, final String isDoneString) {
+    public boolean updateTodo(final String contextId, final UUID id, final String title, final String description, final String isDoneString) {
         return todoRepository.updateTodo(contextId, id, title, description, isDoneString);
     }
 
@@ -51,11 +135,42 @@ public class TodoService {
         todoRepository.deleteAllTodos(contextId);
     }
 
-    public boolean deleteTodoById(final String contextId, final String id) {
+    public boolean deleteTodoById(final String contextId, final UUID id) {
         return todoRepository.deleteTodoById(contextId, id);
     }
 
-    public void deleteCompletedTodos(final String contextId) {
-        getCompletedTodos(contextId).stream().forEach(todo -> todoRepository.deleteTodoById(contextId, todo.getId()));
+    public int deleteCompletedTodos(final String contextId) {
+        return todoRepository.deleteByDone(contextId, true);
+    }
+
+    public List<TodoOperationResult> executeBatch(final String contextId, final List<TodoOperation> operations) {
+        return todoRepository.executeBatch(contextId, operations);
+    }
+
+    private boolean coalesces(final SingleFlight<?, ?> flights, final String contextId) {
+        return flights != null && !todoRepository.isRecentWriter(contextId);
+    }
+
+    // Coalesced lists are shared between callers, so none of them may change it
+    private List<Todo> list(final String contextId, final Supplier<List<Todo>> loader, final Object... key) {
+        if (!coalesces(listFlights, contextId)) {
+            return loader.get();
+        }
+
+        final List<Object> versionedKey = new ArrayList<>(key.length + 1);
+        versionedKey.add(todoRepository.getVersion());
+        versionedKey.addAll(Arrays.asList(key));
+        return listFlights.load(versionedKey, () -> Collections.unmodifiableList(loader.get()));
+    }
+
+    private int page(final String contextId, final Consumer<List<Todo>> loader, final Consumer<Todo> consumer, final Object... key) {
+        final List<Todo> todos = list(contextId, () -> {
+            final List<Todo> page = new ArrayList<>();
+            loader.accept(page);
+            return page;
+        }, key);
+
+        todos.forEach(consumer);
+        return todos.size();
     }
 }
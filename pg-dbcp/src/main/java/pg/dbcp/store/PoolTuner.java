@@ -0,0 +1,66 @@
+package pg.dbcp.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically resizes the pool between a floor and the number of server threads. The pool grows by a quarter
+ * while borrowers queue or the mean borrow wait exceeds the target, and shrinks by one connection at a time
+ * while fewer than half of the connections are in use.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class PoolTuner {
+    private final static Logger logger = LoggerFactory.getLogger(PoolTuner.class);
+
+    private final TunableDataSource dataSource;
+    private final int floor;
+    private final int ceiling;
+    private final long targetWaitMillis;
+
+    public PoolTuner(TunableDataSource dataSource, int floor, int ceiling, long targetWaitMillis) {
+        this.dataSource = dataSource;
+        this.floor = Math.max(1, floor);
+        this.ceiling = Math.max(this.floor, ceiling);
+        this.targetWaitMillis = targetWaitMillis;
+    }
+
+    public void start(final long intervalSeconds) {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "pool-tuner");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        executor.scheduleWithFixedDelay(this::tune, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        logger.info("Tuning pool size between {} and {} connections every {} seconds", floor, ceiling, intervalSeconds);
+    }
+
+    public void tune() {
+        if (dataSource.isClosed()) {
+            return;
+        }
+
+        final int maxTotal = dataSource.getMaxTotal();
+        final int waiters = dataSource.getNumWaiters();
+        final long meanWaitMillis = dataSource.getMeanBorrowWaitTimeMillis();
+
+        final int newMaxTotal;
+        if ((waiters > 0 || meanWaitMillis > targetWaitMillis) && maxTotal < ceiling) {
+            newMaxTotal = Math.min(ceiling, maxTotal + Math.max(1, maxTotal / 4));
+        } else if (waiters == 0 && meanWaitMillis <= targetWaitMillis && dataSource.getNumActive() < maxTotal / 2 && maxTotal > floor) {
+            newMaxTotal = maxTotal - 1;
+        } else {
+            return;
+        }
+
+        logger.info("Resizing pool from {} to {} connections (waiters: {}, mean wait: {} ms)", maxTotal, newMaxTotal, waiters, meanWaitMillis);
+        dataSource.setMaxTotal(newMaxTotal);
+        dataSource.setMaxIdle(newMaxTotal);
+    }
+}
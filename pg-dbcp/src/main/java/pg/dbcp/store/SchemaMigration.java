@@ -0,0 +1,41 @@
+package pg.dbcp.store;
+
+/**
+ * One numbered step of the schema. A migration is applied in a single transaction together with the record of its
+ * version, so it either happens completely or not at all. Published migrations must never be edited; changes go
+ * into a new migration with the next version.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class SchemaMigration {
+    private final int version;
+    private final String description;
+    private final String[] statements;
+
+    public SchemaMigration(final int version, final String description, final String... statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = statements;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String[] getStatements() {
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaMigration{" +
+                "version=" + version +
+                ", description='" + description + '\'' +
+                '}';
+    }
+}
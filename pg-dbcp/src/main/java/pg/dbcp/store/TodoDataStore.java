@@ -1,13 +1,18 @@
 package pg.dbcp.store;
 
-import org.apache.commons.dbcp2.BasicDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pg.dbcp.metrics.MetricsRegistry;
 
 import javax.sql.DataSource;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Properties;
 
 /**
@@ -17,20 +22,61 @@ import java.util.Properties;
 public class TodoDataStore {
     private final static Logger logger = LoggerFactory.getLogger(TodoDataStore.class);
 
-    public static DataSource createDataSource(final String fileName) {
+    private final static String ENVIRONMENT_PREFIX = "DB_";
+    private final static int DEFAULT_SERVER_THREADS = 200;
+
+    private final static String[] SETTINGS = {
+            "url", "username", "password", "driver", "initialConnections", "minIdleConnections", "maxIdleConnections",
+            "maxTotalConnections", "maxWaitMillis", "maxConnLifetimeMillis", "defaultAutoCommit", "defaultReadOnly",
+            "poolPreparedStatements", "maxOpenPreparedStatements", "validationQuery", "validationQueryTimeoutSeconds",
+            "testOnBorrow", "testWhileIdle", "timeBetweenEvictionRunsMillis", "minEvictableIdleTimeMillis",
+            "numTestsPerEvictionRun", "poolAutoTune", "poolAutoTuneIntervalSeconds", "poolAutoTuneTargetWaitMillis",
+            "replicaUrl", "replicaUsername", "replicaPassword", "readYourWritesMillis", "serverMaxThreads",
+            "cacheMaximumSize", "cacheExpireAfterWriteSeconds", "idGenerator", "jsonCodec",
+            "requestExecution", "asyncWorkerThreads", "asyncMaxQueuedRequests",
+            "limiterEnabled", "limiterInitialLimit", "limiterMinLimit", "limiterMaxLimit",
+            "coalesceReads", "getByIdBatchWindowMicros", "getByIdMaxBatchSize",
+            "listETags", "listBodyCacheMaxBytes", "compressResponses", "compressionMinBytes"
+    };
+
+    // Held while migrating, so that instances starting together apply each migration exactly once
+    private final static long MIGRATION_LOCK_ID = 0x746f646f73L;
+
+    private final static SchemaMigration[] MIGRATIONS = {
+            new SchemaMigration(1, "todos table with a uuid primary key",
+                    "create table if not exists todos (id uuid primary key, title varchar(255), description text, isDone boolean)",
+                    // Tables that predate the migrations may have string ids or no primary key at all
+                    "do $$ begin " +
+                            "if exists (select 1 from information_schema.columns where table_schema = current_schema() and table_name = 'todos' and column_name = 'id' and data_type <> 'uuid') then " +
+                            "alter table todos alter column id type uuid using id::uuid; " +
+                            "end if; " +
+                            "if not exists (select 1 from pg_constraint where conrelid = 'todos'::regclass and contype = 'p') then " +
+                            "alter table todos add primary key (id); " +
+                            "end if; " +
+                            "end $$"),
+            new SchemaMigration(2, "partial indexes for pending and completed todos",
+                    "create index if not exists todos_pending_idx on todos (id) where not isDone",
+                    "create index if not exists todos_completed_idx on todos (id) where isDone"),
+            new SchemaMigration(3, "updated_at maintained by a trigger",
+                    "alter table todos add column if not exists updated_at timestamptz not null default now()",
+                    "create or replace function todos_set_updated_at() returns trigger as $$ " +
+                            "begin new.updated_at = now(); return new; end " +
+                            "$$ language plpgsql",
+                    "drop trigger if exists todos_set_updated_at on todos",
+                    "create trigger todos_set_updated_at before update on todos for each row execute procedure todos_set_updated_at()")
+    };
+
+    public static Properties loadProperties(final String fileName) {
         final Properties properties = new Properties();
 
         try (InputStream stream = TodoDataStore.class.getResourceAsStream(fileName)) {
-            properties.load(stream);
+            if (stream == null) {
+                throw new FileNotFoundException(fileName);
+            }
 
-            final BasicDataSource connectionPool = new BasicDataSource();
-            connectionPool.setUsername(properties.getProperty("username"));
-            connectionPool.setPassword(properties.getProperty("password"));
-            connectionPool.setDriverClassName(properties.getProperty("driver"));
-            connectionPool.setUrl(properties.getProperty("url"));
-            connectionPool.setInitialSize(Integer.valueOf(properties.getProperty("initialConnections")));
-            connectionPool.setMinIdle(Integer.valueOf(properties.getProperty("minIdleConnections")));
-            return connectionPool;
+            properties.load(stream);
+            applyEnvironmentOverrides(properties);
+            return properties;
         } catch (FileNotFoundException e) {
             logger.error("Datasource properties file: {} not found", fileName);
             logger.error("Error initializing data source", e);
@@ -41,4 +87,190 @@ public class TodoDataStore {
 
         return null;
     }
+
+    /**
+     * Replaces each setting with the environment variable of the same name in upper snake case prefixed with DB_,
+     * e.g. maxTotalConnections is overridden by DB_MAX_TOTAL_CONNECTIONS
+     */
+    public static void applyEnvironmentOverrides(final Properties properties) {
+        for (String name : SETTINGS) {
+            final String value = System.getenv(ENVIRONMENT_PREFIX + name.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase());
+            if (value != null) {
+                logger.info("Overriding {} from the environment", name);
+                properties.setProperty(name, value);
+            }
+        }
+    }
+
+    public static DataSource createDataSource(final Properties properties) {
+        return createDataSource("primary", properties);
+    }
+
+    /**
+     * Creates a read-only pool for replicaUrl that otherwise shares the primary's settings. The replica credentials
+     * default to the primary's.
+     */
+    public static DataSource createReplicaDataSource(final Properties properties) {
+        final Properties replicaProperties = new Properties();
+        replicaProperties.putAll(properties);
+        replicaProperties.setProperty("url", properties.getProperty("replicaUrl"));
+        replicaProperties.setProperty("username", stringProperty(properties, "replicaUsername", properties.getProperty("username")));
+        replicaProperties.setProperty("password", stringProperty(properties, "replicaPassword", properties.getProperty("password")));
+        replicaProperties.setProperty("defaultReadOnly", "true");
+        return createDataSource("replica", replicaProperties);
+    }
+
+    private static DataSource createDataSource(final String name, final Properties properties) {
+        final TunableDataSource connectionPool = new TunableDataSource();
+        try {
+            connectionPool.setUsername(properties.getProperty("username"));
+            connectionPool.setPassword(properties.getProperty("password"));
+            connectionPool.setDriverClassName(properties.getProperty("driver"));
+            connectionPool.setUrl(properties.getProperty("url"));
+            connectionPool.setInitialSize(intProperty(properties, "initialConnections", 0));
+            connectionPool.setMinIdle(intProperty(properties, "minIdleConnections", 0));
+            connectionPool.setMaxIdle(intProperty(properties, "maxIdleConnections", 8));
+            connectionPool.setMaxTotal(intProperty(properties, "maxTotalConnections", 8));
+            connectionPool.setMaxWaitMillis(longProperty(properties, "maxWaitMillis", -1));
+            connectionPool.setMaxConnLifetimeMillis(longProperty(properties, "maxConnLifetimeMillis", -1));
+
+            // The repository relies on statements committing on their own unless it opens a transaction itself
+            connectionPool.setDefaultAutoCommit(booleanProperty(properties, "defaultAutoCommit", true));
+            connectionPool.setDefaultReadOnly(booleanProperty(properties, "defaultReadOnly", false));
+
+            // Reusing statements per connection lets the driver switch them to server-side prepared statements
+            connectionPool.setPoolPreparedStatements(booleanProperty(properties, "poolPreparedStatements", false));
+            connectionPool.setMaxOpenPreparedStatements(intProperty(properties, "maxOpenPreparedStatements", -1));
+
+            final String validationQuery = properties.getProperty("validationQuery");
+            if (validationQuery != null && !validationQuery.isEmpty()) {
+                connectionPool.setValidationQuery(validationQuery);
+                connectionPool.setValidationQueryTimeout(intProperty(properties, "validationQueryTimeoutSeconds", -1));
+            }
+            connectionPool.setTestOnBorrow(booleanProperty(properties, "testOnBorrow", true));
+            connectionPool.setTestWhileIdle(booleanProperty(properties, "testWhileIdle", false));
+            connectionPool.setTimeBetweenEvictionRunsMillis(longProperty(properties, "timeBetweenEvictionRunsMillis", -1));
+            connectionPool.setMinEvictableIdleTimeMillis(longProperty(properties, "minEvictableIdleTimeMillis", 1800000));
+            connectionPool.setNumTestsPerEvictionRun(intProperty(properties, "numTestsPerEvictionRun", 3));
+        } catch (NumberFormatException e) {
+            logger.error("Invalid data source properties", e);
+            return null;
+        }
+
+        // Fail fast: creating the pool opens the initial connections, and one of them is validated here
+        try (Connection connection = connectionPool.getConnection()) {
+            if (!connection.isValid(5)) {
+                throw new SQLException("Connection to " + connectionPool.getUrl() + " is not valid");
+            }
+        } catch (SQLException e) {
+            logger.error("Unable to connect to {}", connectionPool.getUrl(), e);
+            closeQuietly(connectionPool);
+            return null;
+        }
+
+        if (booleanProperty(properties, "poolAutoTune", false)) {
+            final int serverThreads = intProperty(properties, "serverMaxThreads", DEFAULT_SERVER_THREADS);
+            final PoolTuner poolTuner = new PoolTuner(connectionPool, connectionPool.getMinIdle(), serverThreads,
+                    longProperty(properties, "poolAutoTuneTargetWaitMillis", 5));
+            poolTuner.start(longProperty(properties, "poolAutoTuneIntervalSeconds", 10));
+        }
+
+        logger.info("Connection pool {} ready with up to {} connections to {}", name, connectionPool.getMaxTotal(), connectionPool.getUrl());
+
+        MetricsRegistry.DEFAULT.gauge("todo_pool_active_connections", "Connections currently borrowed from the pool", connectionPool::getNumActive, "pool", name);
+        MetricsRegistry.DEFAULT.gauge("todo_pool_idle_connections", "Idle connections in the pool", connectionPool::getNumIdle, "pool", name);
+        MetricsRegistry.DEFAULT.gauge("todo_pool_max_connections", "Maximum number of connections in the pool", connectionPool::getMaxTotal, "pool", name);
+        MetricsRegistry.DEFAULT.gauge("todo_pool_waiters", "Threads waiting to borrow a connection", connectionPool::getNumWaiters, "pool", name);
+        return connectionPool;
+    }
+
+    /**
+     * Brings the schema up to the latest migration, applying those not yet recorded in schema_migrations in order.
+     *
+     * @return false if a migration failed; it is rolled back and the ones before it stay applied
+     */
+    public static boolean migrate(final DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("select pg_advisory_lock(" + MIGRATION_LOCK_ID + ")");
+                try {
+                    statement.execute("create table if not exists schema_migrations (version int primary key, description text not null, applied_at timestamptz not null default now())");
+
+                    final int currentVersion = currentVersion(statement);
+                    for (SchemaMigration migration : MIGRATIONS) {
+                        if (migration.getVersion() > currentVersion) {
+                            apply(connection, migration);
+                        }
+                    }
+
+                    logger.info("Schema is at version {}", Math.max(currentVersion, MIGRATIONS[MIGRATIONS.length - 1].getVersion()));
+                } finally {
+                    statement.execute("select pg_advisory_unlock(" + MIGRATION_LOCK_ID + ")");
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error migrating schema", e);
+            return false;
+        }
+
+        return true;
+    }
+
+    private static int currentVersion(final Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("select coalesce(max(version), 0) from schema_migrations")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void apply(final Connection connection, final SchemaMigration migration) throws SQLException {
+        logger.info("Applying migration {}: {}", migration.getVersion(), migration.getDescription());
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : migration.getStatements()) {
+                logger.info("Executing: {}", sql);
+                statement.execute(sql);
+            }
+
+            try (PreparedStatement record = connection.prepareStatement("insert into schema_migrations (version, description) values (?, ?)")) {
+                record.setInt(1, migration.getVersion());
+                record.setString(2, migration.getDescription());
+                record.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static String stringProperty(final Properties properties, final String name, final String defaultValue) {
+        final String value = properties.getProperty(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    private static int intProperty(final Properties properties, final String name, final int defaultValue) {
+        final String value = properties.getProperty(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longProperty(final Properties properties, final String name, final long defaultValue) {
+        final String value = properties.getProperty(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static boolean booleanProperty(final Properties properties, final String name, final boolean defaultValue) {
+        final String value = properties.getProperty(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private static void closeQuietly(final TunableDataSource dataSource) {
+        try {
+            dataSource.close();
+        } catch (SQLException e) {
+            logger.error("Error closing data source", e);
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package pg.dbcp.store;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * BasicDataSource that exposes the borrow statistics of its underlying pool, which BasicDataSource keeps protected.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TunableDataSource extends BasicDataSource {
+    public int getNumWaiters() {
+        final GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return (pool == null) ? 0 : pool.getNumWaiters();
+    }
+
+    /**
+     * @return mean time in milliseconds spent waiting by the last 100 borrows
+     */
+    public long getMeanBorrowWaitTimeMillis() {
+        final GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return (pool == null) ? 0 : pool.getMeanBorrowWaitTimeMillis();
+    }
+}
@@ -0,0 +1,126 @@
+package pg.dbcp.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pg.dbcp.model.Todo;
+import pg.dbcp.store.TodoDataStore;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routes reads between a primary and a replica that are both the same embedded database, counting the
+ * connections borrowed from each, and checks that a client's reads follow its writes to the primary.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class ReadYourWritesTest {
+    private final static long READ_YOUR_WRITES_MILLIS = 60_000;
+
+    private static EmbeddedPostgres postgres;
+
+    private final AtomicInteger primaryBorrows = new AtomicInteger();
+    private final AtomicInteger replicaBorrows = new AtomicInteger();
+    private TodoRepository todoRepository;
+
+    @BeforeClass
+    public static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        assertTrue(TodoDataStore.migrate(postgres.getPostgresDatabase()));
+    }
+
+    @AfterClass
+    public static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Before
+    public void setUp() {
+        final DataSource dataSource = postgres.getPostgresDatabase();
+        todoRepository = new TodoRepository(counting(dataSource, primaryBorrows), counting(dataSource, replicaBorrows), READ_YOUR_WRITES_MILLIS);
+    }
+
+    @Test
+    public void readInLaterRequestWithWriteTokenGoesToPrimary() {
+        final Todo todo = insert("write-request");
+        final String token = todoRepository.writeToken();
+        assertNotNull(token);
+
+        resetBorrows();
+        todoRepository.readYourWrites("read-request", token);
+        assertEquals(todo.getId(), todoRepository.getById("read-request", todo.getId()).get().getId());
+        assertEquals(1, primaryBorrows.get());
+        assertEquals(0, replicaBorrows.get());
+    }
+
+    @Test
+    public void readWithoutWriteTokenGoesToReplica() {
+        final Todo todo = insert("write-request");
+
+        resetBorrows();
+        todoRepository.readYourWrites("read-request", null);
+        todoRepository.getById("read-request", todo.getId());
+        assertEquals(0, primaryBorrows.get());
+        assertEquals(1, replicaBorrows.get());
+    }
+
+    @Test
+    public void readWithExpiredOrMalformedWriteTokenGoesToReplica() {
+        final Todo todo = insert("write-request");
+
+        resetBorrows();
+        todoRepository.readYourWrites("expired-request", Long.toString(System.currentTimeMillis() - READ_YOUR_WRITES_MILLIS - 1));
+        todoRepository.getById("expired-request", todo.getId());
+        todoRepository.readYourWrites("future-request", Long.toString(System.currentTimeMillis() + READ_YOUR_WRITES_MILLIS));
+        todoRepository.getById("future-request", todo.getId());
+        todoRepository.readYourWrites("malformed-request", "not-a-token");
+        todoRepository.getById("malformed-request", todo.getId());
+        assertEquals(0, primaryBorrows.get());
+        assertEquals(3, replicaBorrows.get());
+    }
+
+    @Test
+    public void writeTokenIsOnlyHandedOutWithReplica() {
+        final DataSource dataSource = postgres.getPostgresDatabase();
+        assertNull(new TodoRepository(dataSource, dataSource, READ_YOUR_WRITES_MILLIS).writeToken());
+        assertNull(new TodoRepository(dataSource, counting(dataSource, replicaBorrows), 0).writeToken());
+    }
+
+    private Todo insert(final String contextId) {
+        final Todo todo = new Todo();
+        todo.setTitle("title");
+        todo.setDescription("description");
+        assertTrue(todoRepository.insertTodo(contextId, todo));
+        return todo;
+    }
+
+    private void resetBorrows() {
+        primaryBorrows.set(0);
+        replicaBorrows.set(0);
+    }
+
+    private static DataSource counting(final DataSource dataSource, final AtomicInteger borrows) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                borrows.incrementAndGet();
+            }
+            try {
+                return method.invoke(dataSource, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package pg.dbcp.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pg.dbcp.model.Todo;
+import pg.dbcp.repository.TodoRepository;
+import pg.dbcp.store.TodoDataStore;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Holds lookups on the replica in flight, and checks that a client sending back the token of its write neither joins
+ * a shared load nor waits for a batch, but reads from the primary on its own.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class CoalescingReadYourWritesTest {
+    private final static long READ_YOUR_WRITES_MILLIS = 60_000;
+
+    private static EmbeddedPostgres postgres;
+
+    private final AtomicInteger primaryBorrows = new AtomicInteger();
+    private final CountDownLatch replicaBorrowed = new CountDownLatch(1);
+    private final CountDownLatch replicaReleased = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @BeforeClass
+    public static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        assertTrue(TodoDataStore.migrate(postgres.getPostgresDatabase()));
+    }
+
+    @AfterClass
+    public static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @After
+    public void tearDown() {
+        replicaReleased.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void readWithWriteTokenSkipsLoadInFlight() throws Exception {
+        assertReadsOwnWrite(0);
+    }
+
+    // A batched read would wait out the whole window and then block on the replica
+    @Test
+    public void readWithWriteTokenSkipsBatch() throws Exception {
+        assertReadsOwnWrite(TimeUnit.SECONDS.toMicros(5));
+    }
+
+    private void assertReadsOwnWrite(final long batchWindowMicros) throws Exception {
+        final DataSource dataSource = postgres.getPostgresDatabase();
+        final TodoRepository todoRepository = new TodoRepository(countingPrimary(dataSource), blockingReplica(dataSource), READ_YOUR_WRITES_MILLIS);
+        todoRepository.batchLookupsById(batchWindowMicros, 100);
+        final TodoService todoService = new TodoService(todoRepository, true);
+
+        final Todo todo = new Todo();
+        todo.setTitle("title");
+        assertTrue(todoService.addTodo("write-request", todo));
+        final String token = todoService.writeToken();
+        assertNotNull(token);
+
+        final Future<Todo> shared = executor.submit(() -> todoService.getTodoById("other-request", todo.getId()));
+        if (batchWindowMicros == 0) {
+            assertTrue(replicaBorrowed.await(10, TimeUnit.SECONDS));
+        }
+
+        primaryBorrows.set(0);
+        final Future<Todo> own = executor.submit(() -> {
+            todoService.readYourWrites("read-request", token);
+            return todoService.getTodoById("read-request", todo.getId());
+        });
+        assertEquals(todo.getId(), own.get(3, TimeUnit.SECONDS).getId());
+        assertEquals(1, primaryBorrows.get());
+        assertFalse(shared.isDone());
+
+        replicaReleased.countDown();
+        assertEquals(todo.getId(), shared.get(60, TimeUnit.SECONDS).getId());
+    }
+
+    private DataSource countingPrimary(final DataSource dataSource) {
+        return proxy(dataSource, primaryBorrows::incrementAndGet);
+    }
+
+    // Replica connections are handed out only once the test lets them go
+    private DataSource blockingReplica(final DataSource dataSource) {
+        return proxy(dataSource, () -> {
+            replicaBorrowed.countDown();
+            try {
+                replicaReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static DataSource proxy(final DataSource dataSource, final Runnable onBorrow) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                onBorrow.run();
+            }
+            try {
+                return method.invoke(dataSource, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package restapi.benchmark;
+
+import restapi.model.Todo;
+import restapi.repository.HeapTodoRepository;
+import restapi.repository.OffHeapTodoRepository;
+import restapi.repository.TodoRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoFixtures {
+    public static Todo createTodo(final int index) {
+        final Todo todo = new Todo();
+        todo.setTitle("Todo " + index);
+        todo.setDescription("Description of benchmark todo number " + index);
+        todo.setDone(index % 2 == 0);
+        return todo;
+    }
+
+    public static List<Todo> createTodos(final int size) {
+        final List<Todo> todos = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            todos.add(createTodo(i));
+        }
+
+        return todos;
+    }
+
+    public static TodoRepository createRepository(final String engine) {
+        return "offheap".equals(engine) ? new OffHeapTodoRepository(64 << 20) : new HeapTodoRepository();
+    }
+
+    public static UUID[] populate(final TodoRepository todoRepository, final int size) {
+        final UUID[] ids = new UUID[size];
+        for (int i = 0; i < size; i++) {
+            final Todo todo = createTodo(i);
+            todoRepository.insertTodo(todo);
+            ids[i] = todo.getId();
+        }
+
+        return ids;
+    }
+}
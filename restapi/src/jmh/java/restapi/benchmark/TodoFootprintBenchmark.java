@@ -0,0 +1,69 @@
+package restapi.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import restapi.repository.TodoRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the heap retained by a populated repository of each storage engine in the retainedHeapBytes counter,
+ * next to the time it takes to populate it.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=2g"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class TodoFootprintBenchmark {
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"heap", "offheap"})
+    private String engine;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedHeapBytes;
+    }
+
+    @Benchmark
+    public TodoRepository populate(final Footprint footprint) {
+        final long before = usedHeap();
+        final TodoRepository todoRepository = createPopulated();
+        footprint.retainedHeapBytes = usedHeap() - before;
+        return todoRepository;
+    }
+
+    // Kept out of line so that nothing but the repository is still reachable from the benchmark frame
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private TodoRepository createPopulated() {
+        final TodoRepository todoRepository = TodoFixtures.createRepository(engine);
+        TodoFixtures.populate(todoRepository, size);
+        return todoRepository;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
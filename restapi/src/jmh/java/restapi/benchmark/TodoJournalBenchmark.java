@@ -0,0 +1,80 @@
+package restapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import restapi.repository.HeapTodoRepository;
+import restapi.repository.TodoRepository;
+import restapi.store.TodoJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Cost of a journaled insert for each sync mode, against the purely in-memory repository.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TodoJournalBenchmark {
+    @Param({"MEMORY", "NONE", "BATCH", "COMMIT"})
+    private String syncMode;
+
+    private final AtomicInteger counter = new AtomicInteger();
+    private Path directory;
+    private TodoJournal journal;
+    private TodoRepository todoRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("MEMORY".equals(syncMode)) {
+            todoRepository = new HeapTodoRepository();
+            return;
+        }
+
+        directory = Files.createTempDirectory("todo-journal");
+        journal = new TodoJournal(directory, TodoJournal.SyncMode.valueOf(syncMode), 10);
+        todoRepository = new HeapTodoRepository(journal);
+        todoRepository.recover();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (journal == null) {
+            return;
+        }
+
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean insertTodo() {
+        return todoRepository.insertTodo(TodoFixtures.createTodo(counter.incrementAndGet()));
+    }
+}
@@ -0,0 +1,96 @@
+package restapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import restapi.model.Todo;
+import restapi.repository.TodoRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TodoRepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"heap", "offheap"})
+    private String engine;
+
+    private TodoRepository todoRepository;
+    private UUID[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        todoRepository = TodoFixtures.createRepository(engine);
+        ids = TodoFixtures.populate(todoRepository, size);
+    }
+
+    @Benchmark
+    public Optional<Todo> getById() {
+        return todoRepository.getById(randomId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Todo> getAll() {
+        return todoRepository.getAll();
+    }
+
+    @Benchmark
+    public boolean insertAndDelete() {
+        final Todo todo = TodoFixtures.createTodo(size);
+        todoRepository.insertTodo(todo);
+        return todoRepository.deleteTodoById(todo.getId());
+    }
+
+    @Benchmark
+    public boolean update() {
+        return todoRepository.updateTodo(randomId(), null, null, randomDone());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Optional<Todo> mixedRead() {
+        return todoRepository.getById(randomId());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedWrite() {
+        return todoRepository.updateTodo(randomId(), null, null, randomDone());
+    }
+
+    private UUID randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    private static String randomDone() {
+        return String.valueOf(ThreadLocalRandom.current().nextBoolean());
+    }
+}
@@ -0,0 +1,114 @@
+package restapi.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import restapi.controller.GsonTodoCodec;
+import restapi.controller.TodoCodec;
+import restapi.controller.Utf8TodoCodec;
+import restapi.model.Todo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building the whole list response as a String, streaming it through a JsonWriter with Gson's
+ * reflective adapter, and streaming it through each TodoCodec the way TodoController does. Run with -prof gc to
+ * see the allocation per response.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TodoSerializationBenchmark {
+    @Param({"100", "10000"})
+    private int size;
+
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final TodoCodec gsonCodec = new GsonTodoCodec();
+    private final TodoCodec utf8Codec = new Utf8TodoCodec();
+    private List<Todo> todos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        todos = TodoFixtures.createTodos(size);
+    }
+
+    @Benchmark
+    public byte[] toJsonString() {
+        final Type type = new TypeToken<List<Todo>>() {}.getType();
+        return gson.toJson(todos, type).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long streamJson() throws IOException {
+        final CountingOutputStream outputStream = new CountingOutputStream();
+        final JsonWriter writer = new JsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.beginArray();
+        for (Todo todo : todos) {
+            gson.toJson(todo, Todo.class, writer);
+        }
+        writer.endArray();
+        writer.flush();
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public long gsonCodec() throws IOException {
+        return writeWith(gsonCodec);
+    }
+
+    @Benchmark
+    public long utf8Codec() throws IOException {
+        return writeWith(utf8Codec);
+    }
+
+    private long writeWith(final TodoCodec codec) throws IOException {
+        final CountingOutputStream outputStream = new CountingOutputStream();
+        final TodoCodec.Writer writer = codec.open(outputStream);
+        writer.beginList(false);
+        for (Todo todo : todos) {
+            writer.writeTodo(todo);
+        }
+        writer.endList(null);
+        writer.flush();
+        return outputStream.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
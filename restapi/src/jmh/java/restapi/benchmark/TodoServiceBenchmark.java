@@ -0,0 +1,81 @@
+package restapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import restapi.model.Todo;
+import restapi.repository.HeapTodoRepository;
+import restapi.repository.TodoRepository;
+import restapi.service.TodoService;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TodoServiceBenchmark {
+    private final static int PAGE_SIZE = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private TodoService todoService;
+    private UUID[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final TodoRepository todoRepository = new HeapTodoRepository();
+        ids = TodoFixtures.populate(todoRepository, size);
+        todoService = new TodoService(todoRepository);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Todo getTodoById() {
+        return todoService.getTodoById(randomId());
+    }
+
+    @Benchmark
+    public List<Todo> getPendingTodos() {
+        return todoService.getPendingTodos();
+    }
+
+    @Benchmark
+    public List<Todo> getCompletedTodos() {
+        return todoService.getCompletedTodos();
+    }
+
+    @Benchmark
+    public int streamPendingPage(final Blackhole blackhole) {
+        return todoService.streamPendingTodos(randomId(), PAGE_SIZE, blackhole::consume);
+    }
+
+    @Benchmark
+    public int streamCompletedPage(final Blackhole blackhole) {
+        return todoService.streamCompletedTodos(randomId(), PAGE_SIZE, blackhole::consume);
+    }
+
+    private UUID randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,123 @@
+package restapi.loadtest;
+
+import com.google.gson.Gson;
+import restapi.Application;
+import restapi.model.TodoOperationResult;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static spark.Spark.awaitInitialization;
+import static spark.Spark.stop;
+
+/**
+ * Starts the application in-process on an ephemeral port, preloads it with todos and drives a fixed
+ * arrival rate of mixed requests against it.
+ *
+ * Usage: ./gradlew loadTest -PloadTestArgs="--rate 2000 --duration 30 --threads 64 --mix get=60,list=10,create=10,update=15,delete=5"
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class LoadTest {
+    private final static int PRELOAD_BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = parseOptions(args);
+        final int rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+        final int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        final int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        final int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+        final int todos = Integer.parseInt(options.getOrDefault("todos", "10000"));
+        final Map<Operation, Integer> mix = parseMix(options.getOrDefault("mix", "list=10,get=60,create=10,update=15,delete=5"));
+
+        // HttpURLConnection only keeps 5 idle connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+
+        final int port = freePort();
+        Application.start(port);
+        awaitInitialization();
+
+        final String baseUrl = "http://localhost:" + port;
+        final String[] ids = preload(baseUrl, todos);
+        final LoadGenerator loadGenerator = new LoadGenerator(baseUrl, ids, mix, threads);
+
+        System.out.printf("Warming up for %ds at %d req/s%n", warmup, rate);
+        loadGenerator.run(rate, warmup);
+
+        System.out.printf("Running for %ds at %d req/s with %d threads, mix %s, %d todos%n", duration, rate, threads, mix, todos);
+        loadGenerator.run(rate, duration).print(System.out);
+
+        stop();
+        System.exit(0);
+    }
+
+    private static String[] preload(final String baseUrl, final int todos) throws IOException {
+        final Gson gson = new Gson();
+        final List<String> ids = new ArrayList<>(todos);
+
+        for (int created = 0; created < todos; created += PRELOAD_BATCH_SIZE) {
+            final StringBuilder body = new StringBuilder("[");
+            for (int i = created; i < Math.min(todos, created + PRELOAD_BATCH_SIZE); i++) {
+                if (i > created) body.append(',');
+                body.append("{\"op\":\"create\",\"title\":\"Todo ").append(i).append("\",\"isDone\":").append(i % 2 == 0).append('}');
+            }
+            body.append(']');
+
+            final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/batch").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream stream = connection.getOutputStream()) {
+                stream.write(body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                for (TodoOperationResult result : gson.fromJson(reader, TodoOperationResult[].class)) {
+                    ids.add(result.getId().toString());
+                }
+            }
+        }
+
+        return ids.toArray(new String[ids.size()]);
+    }
+
+    private static Map<String, String> parseOptions(final String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option but found: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        return options;
+    }
+
+    private static Map<Operation, Integer> parseMix(final String mix) {
+        final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            final String[] parts = entry.split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1].trim()));
+        }
+
+        return weights;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
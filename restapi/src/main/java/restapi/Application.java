@@ -1,8 +1,24 @@
 package restapi;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import restapi.controller.ListResponseCache;
+import restapi.controller.ResponseCompression;
+import restapi.controller.TodoCodec;
 import restapi.controller.TodoController;
+import restapi.model.TodoIds;
+import restapi.repository.HeapTodoRepository;
+import restapi.repository.OffHeapTodoRepository;
 import restapi.repository.TodoRepository;
 import restapi.service.TodoService;
+import restapi.store.TodoDataStore;
+import restapi.store.TodoJournal;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static spark.Spark.port;
 
@@ -11,10 +27,93 @@ import static spark.Spark.port;
  *         https://github.com/abhigupta912
  */
 public class Application {
+    private final static Logger logger = LoggerFactory.getLogger(Application.class);
+
     public static void main(String[] args) {
-        port(9000);
+        final Properties properties = TodoDataStore.loadProperties("/store.properties");
+        if (properties == null || !start(9000, properties)) {
+            logger.error("Unable to initialize store");
+        }
+    }
+
+    public static void start(final int port) {
+        start(port, new Properties());
+    }
 
-        final TodoController todoController = new TodoController(new TodoService(new TodoRepository()));
+    public static boolean start(final int port, final Properties properties) {
+        TodoIds.useTimeOrdered("timeOrdered".equalsIgnoreCase(properties.getProperty("idGenerator", "random").trim()));
+
+        final TodoJournal journal = TodoDataStore.createJournal(properties);
+        final TodoRepository todoRepository = createRepository(journal, properties);
+        try {
+            todoRepository.recover();
+        } catch (IOException e) {
+            logger.error("Unable to recover store", e);
+            return false;
+        }
+
+        if (journal != null) {
+            scheduleSnapshots(todoRepository, journal, Long.parseLong(properties.getProperty("snapshotIntervalSeconds", "300").trim()));
+        }
+
+        port(port);
+
+        final TodoController todoController = new TodoController(new TodoService(todoRepository), TodoCodec.forName(properties.getProperty("jsonCodec", "gson")),
+                new ListResponseCache(Long.parseLong(properties.getProperty("listBodyCacheMaxBytes", "0").trim())), createCompression(properties));
         todoController.initializeRotues();
+        return true;
+    }
+
+    private static ResponseCompression createCompression(final Properties properties) {
+        if (!Boolean.parseBoolean(properties.getProperty("compressResponses", "false").trim())) {
+            return null;
+        }
+
+        return new ResponseCompression(Integer.parseInt(properties.getProperty("compressionMinBytes", "1024").trim()));
+    }
+
+    private static TodoRepository createRepository(final TodoJournal journal, final Properties properties) {
+        final String storageEngine = properties.getProperty("storageEngine", "heap").trim();
+        if ("offheap".equalsIgnoreCase(storageEngine)) {
+            final int chunkMegabytes = Integer.parseInt(properties.getProperty("offHeapChunkMegabytes", "64").trim());
+            return new OffHeapTodoRepository(journal, chunkMegabytes << 20);
+        }
+
+        return new HeapTodoRepository(journal);
+    }
+
+    private static void scheduleSnapshots(final TodoRepository todoRepository, final TodoJournal journal, final long intervalSeconds) {
+        final ScheduledExecutorService executor;
+        if (intervalSeconds > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "store-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(() -> snapshot(todoRepository), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        } else {
+            executor = null;
+        }
+
+        // A snapshot on the way out keeps the next recovery from having to replay the whole journal
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            snapshot(todoRepository);
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("Unable to close journal", e);
+            }
+        }, "store-shutdown"));
+    }
+
+    private static void snapshot(final TodoRepository todoRepository) {
+        try {
+            todoRepository.snapshot();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to write snapshot", e);
+        }
     }
 }
@@ -0,0 +1,169 @@
+package restapi.controller;
+
+import restapi.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turns the store version into a weak ETag for list responses, and keeps the serialized bodies of the lists
+ * written at the current version so that repeated requests skip the store and the codec. Bodies of older versions
+ * are dropped as soon as one of a newer version is stored, and the bodies of a version stay within maxBytes.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class ListResponseCache {
+    private final static LongAdder HITS = MetricsRegistry.DEFAULT.counter("todo_list_cache_requests_total", "List body cache lookups by result", "result", "hit");
+    private final static LongAdder MISSES = MetricsRegistry.DEFAULT.counter("todo_list_cache_requests_total", "List body cache lookups by result", "result", "miss");
+
+    // Versions restart with the process, so the tag also carries its start time
+    private final String etagPrefix = "W/\"" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final long maxBytes;
+    private final AtomicReference<Generation> current = new AtomicReference<>(new Generation(-1));
+
+    /**
+     * @param maxBytes the room for the bodies of one version, or 0 to only tag responses
+     */
+    public ListResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public String etag(final long version) {
+        return etagPrefix + version + "\"";
+    }
+
+    /**
+     * @param ifNoneMatch the If-None-Match header of the request, compared weakly with the tag
+     */
+    public static boolean matches(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        final String opaqueTag = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            final String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(opaqueTag) || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Body get(final long version, final String key) {
+        if (maxBytes <= 0) {
+            return null;
+        }
+
+        final Generation generation = current.get();
+        final Body body = (generation.version == version) ? generation.bodies.get(key) : null;
+        (body == null ? MISSES : HITS).increment();
+        return body;
+    }
+
+    /**
+     * Copies what is written to out so that it can be stored once complete, unless it outgrows the cache.
+     */
+    public Recording record(final OutputStream out) {
+        return new Recording(out, maxBytes);
+    }
+
+    public void put(final long version, final String key, final Recording recording, final int count) {
+        final byte[] bytes = recording.toByteArray();
+        if (bytes == null) {
+            return;
+        }
+
+        Generation generation = current.get();
+        while (generation.version < version) {
+            final Generation newer = new Generation(version);
+            generation = current.compareAndSet(generation, newer) ? newer : current.get();
+        }
+
+        if (generation.version != version) {
+            return;
+        }
+
+        if (generation.usedBytes.addAndGet(bytes.length) > maxBytes
+                || generation.bodies.putIfAbsent(key, new Body(bytes, count)) != null) {
+            generation.usedBytes.addAndGet(-bytes.length);
+        }
+    }
+
+    public static class Body {
+        private final byte[] bytes;
+        private final int count;
+
+        Body(final byte[] bytes, final int count) {
+            this.bytes = bytes;
+            this.count = count;
+        }
+
+        public void writeTo(final OutputStream out) throws IOException {
+            out.write(bytes);
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    public static class Recording extends OutputStream {
+        private final OutputStream out;
+        private final long maxBytes;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Recording(final OutputStream out, final long maxBytes) {
+            this.out = out;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            copy(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            copy(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        byte[] toByteArray() {
+            return (copy == null) ? null : copy.toByteArray();
+        }
+
+        private void copy(final byte[] b, final int off, final int len) {
+            if (copy != null) {
+                if (copy.size() + len > maxBytes) {
+                    copy = null;
+                } else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+    }
+
+    private static class Generation {
+        private final long version;
+        private final ConcurrentMap<String, Body> bodies = new ConcurrentHashMap<>();
+        private final AtomicLong usedBytes = new AtomicLong();
+
+        Generation(final long version) {
+            this.version = version;
+        }
+    }
+}
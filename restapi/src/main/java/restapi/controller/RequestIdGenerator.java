@@ -0,0 +1,23 @@
+package restapi.controller;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap request ids for log correlation: a random per-process prefix followed by a monotonic counter.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class RequestIdGenerator {
+    private final String prefix;
+    private final AtomicLong counter = new AtomicLong();
+
+    public RequestIdGenerator() {
+        this.prefix = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    }
+
+    public String nextId() {
+        return prefix + '-' + Long.toHexString(counter.incrementAndGet());
+    }
+}
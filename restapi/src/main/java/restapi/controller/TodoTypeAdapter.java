@@ -0,0 +1,86 @@
+package restapi.controller;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import restapi.model.Todo;
+import restapi.model.TodoIds;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Reads and writes Todos field by field, so that Gson never reflects over them. Fields are written in declaration
+ * order, which keeps the output identical to Gson's reflective adapter.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoTypeAdapter extends TypeAdapter<Todo> {
+    @Override
+    public void write(final JsonWriter out, final Todo todo) throws IOException {
+        if (todo == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("id").value((todo.getId() == null) ? null : todo.getId().toString());
+        out.name("title").value(todo.getTitle());
+        out.name("description").value(todo.getDescription());
+        out.name("isDone").value(todo.isDone());
+        out.endObject();
+    }
+
+    @Override
+    public Todo read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        UUID id = null;
+        String title = null;
+        String description = null;
+        boolean isDone = false;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case "id":
+                    final String idString = in.nextString();
+                    id = TodoIds.parse(idString);
+                    if (id == null) {
+                        throw new JsonParseException("Invalid id: " + idString);
+                    }
+                    break;
+                case "title":
+                    title = in.nextString();
+                    break;
+                case "description":
+                    description = in.nextString();
+                    break;
+                case "isDone":
+                    isDone = in.nextBoolean();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        final Todo todo = (id == null) ? new Todo() : new Todo(id);
+        todo.setTitle(title);
+        todo.setDescription(description);
+        todo.setDone(isDone);
+        return todo;
+    }
+}
@@ -0,0 +1,59 @@
+package restapi.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets from ~1us to ~34s. Recording is a
+ * leading-zero count plus two striped counter increments, so it stays in the low nanoseconds even
+ * when many threads record at once.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class LatencyHistogram {
+    private final static int MIN_SHIFT = 10;
+    private final static int MAX_SHIFT = 35;
+
+    private final LongAdder[] buckets = new LongAdder[MAX_SHIFT - MIN_SHIFT + 2];
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(final long nanos) {
+        buckets[indexOf(nanos)].increment();
+        sum.add(nanos);
+    }
+
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * @return the inclusive upper bound of the given bucket in nanoseconds, or Long.MAX_VALUE for the last one
+     */
+    public long getUpperBound(final int bucket) {
+        return (bucket == buckets.length - 1) ? Long.MAX_VALUE : 1L << (MIN_SHIFT + bucket);
+    }
+
+    public long getCount(final int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    private int indexOf(final long nanos) {
+        if (nanos <= (1L << MIN_SHIFT)) {
+            return 0;
+        }
+
+        // nanos in (2^(k-1), 2^k] lands in the bucket with upper bound 2^k
+        final int shift = 64 - Long.numberOfLeadingZeros(nanos - 1);
+        return Math.min(shift - MIN_SHIFT, buckets.length - 1);
+    }
+}
@@ -0,0 +1,54 @@
+package restapi.metrics;
+
+import spark.HaltException;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records latency and response counts by status class for a single route. This wraps the route itself
+ * rather than using before/after filters because Spark skips after filters for halted requests.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TimedRoute implements Route {
+    private final Route route;
+    private final LatencyHistogram latency;
+    private final LongAdder[] responses = new LongAdder[6];
+
+    private TimedRoute(final String method, final String path, final Route route) {
+        this.route = route;
+        this.latency = MetricsRegistry.DEFAULT.histogram("todo_http_request_duration_seconds",
+                "Time spent handling HTTP requests", "method", method, "route", path);
+
+        for (int i = 1; i < responses.length; i++) {
+            responses[i] = MetricsRegistry.DEFAULT.counter("todo_http_responses_total",
+                    "HTTP responses by status class", "method", method, "route", path, "status", i + "xx");
+        }
+    }
+
+    public static Route timed(final String method, final String path, final Route route) {
+        return new TimedRoute(method, path, route);
+    }
+
+    @Override
+    public Object handle(final Request request, final Response response) throws Exception {
+        final long start = System.nanoTime();
+        int status = 500;
+
+        try {
+            final Object body = route.handle(request, response);
+            status = response.raw().getStatus();
+            return body;
+        } catch (HaltException e) {
+            status = e.statusCode();
+            throw e;
+        } finally {
+            latency.record(System.nanoTime() - start);
+            responses[Math.max(1, Math.min(5, status / 100))].increment();
+        }
+    }
+}
@@ -7,20 +7,20 @@ import java.util.UUID;
  *         https://github.com/abhigupta912
  */
 public class Todo {
-    private final String id;
+    private final UUID id;
     private String title;
     private String description;
     private boolean isDone;
 
     public Todo() {
-        id = UUID.randomUUID().toString();
+        id = TodoIds.next();
     }
 
-    public Todo(final String id) {
+    public Todo(final UUID id) {
         this.id = id;
     }
 
-    public String getId() {
+    public UUID getId() {
         return id;
     }
 
@@ -66,7 +66,7 @@ public class Todo {
     @Override
     public String toString() {
         return "Todo{" +
-                "id='" + id + '\'' +
+                "id=" + id +
                 ", title='" + title + '\'' +
                 ", description='" + description + '\'' +
                 ", isDone=" + isDone +
@@ -0,0 +1,107 @@
+package restapi.model;
+
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates, parses and orders Todo ids.
+ *
+ * Ids are random version 4 UUIDs unless time-ordered ids are switched on. Those follow the version 7 layout: a
+ * 48-bit millisecond timestamp, a 12-bit sequence that keeps ids from one process strictly increasing within a
+ * millisecond, and 62 random bits. New rows then land at the right edge of a B-tree instead of splitting pages
+ * all over it. Their random bits come from ThreadLocalRandom, so they are unique but not unguessable.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoIds {
+    private final static AtomicLong LAST_TICK = new AtomicLong();
+
+    /**
+     * Orders ids as unsigned 128-bit numbers, which is also the order of their canonical strings and of the
+     * Postgres uuid type. UUID.compareTo compares signed halves and disagrees with both.
+     */
+    public final static Comparator<UUID> ORDER = TodoIds::compare;
+
+    private static volatile boolean timeOrdered;
+
+    public static void useTimeOrdered(final boolean enabled) {
+        timeOrdered = enabled;
+    }
+
+    public static UUID next() {
+        return timeOrdered ? nextTimeOrdered() : UUID.randomUUID();
+    }
+
+    public static UUID nextTimeOrdered() {
+        // A tick is the millisecond timestamp followed by the 12-bit sequence; a sequence overflow borrows from the next millisecond
+        final long now = System.currentTimeMillis() << 12;
+        long last;
+        long tick;
+        do {
+            last = LAST_TICK.get();
+            tick = Math.max(now, last + 1);
+        } while (!LAST_TICK.compareAndSet(last, tick));
+
+        final long msb = ((tick >>> 12) << 16) | 0x7000L | (tick & 0xfffL);
+        final long lsb = (ThreadLocalRandom.current().nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Parses the 36-character hyphenated form, in either case.
+     *
+     * @return the id, or null when the string is not a well formed UUID
+     */
+    public static UUID parse(final String id) {
+        if (id == null || id.length() != 36
+                || id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') {
+            return null;
+        }
+
+        final long timeLow = hex(id, 0, 8);
+        final long timeMid = hex(id, 9, 13);
+        final long timeHigh = hex(id, 14, 18);
+        final long clockSequence = hex(id, 19, 23);
+        final long node = hex(id, 24, 36);
+        if ((timeLow | timeMid | timeHigh | clockSequence | node) < 0) {
+            return null;
+        }
+
+        return new UUID(timeLow << 32 | timeMid << 16 | timeHigh, clockSequence << 48 | node);
+    }
+
+    public static int compare(final UUID id, final UUID otherId) {
+        final int result = Long.compareUnsigned(id.getMostSignificantBits(), otherId.getMostSignificantBits());
+        return (result != 0) ? result : Long.compareUnsigned(id.getLeastSignificantBits(), otherId.getLeastSignificantBits());
+    }
+
+    // Returns -1 if any character is not a hex digit; at most 12 digits are read, so valid values are never negative
+    private static long hex(final String id, final int start, final int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = hexDigit(id.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+
+            value = (value << 4) | digit;
+        }
+
+        return value;
+    }
+
+    // Character.digit would also take the digits of other scripts, which a UUID never contains
+    private static int hexDigit(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
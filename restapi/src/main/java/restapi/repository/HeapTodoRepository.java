@@ -0,0 +1,281 @@
+package restapi.repository;
+
+import restapi.metrics.MetricsRegistry;
+import restapi.model.Todo;
+import restapi.model.TodoIds;
+import restapi.store.TodoJournal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Keeps Todos in concurrent maps on the heap: one by id, and skip lists that keep all of them and each done state
+ * in id order, so that a page is an O(log n) seek.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class HeapTodoRepository extends TodoRepository {
+    private final ConcurrentMap<UUID, Todo> todoStore = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<UUID, Todo> orderedIndex = new ConcurrentSkipListMap<>(TodoIds.ORDER);
+    private final ConcurrentNavigableMap<UUID, Todo> pendingIndex = new ConcurrentSkipListMap<>(TodoIds.ORDER);
+    private final ConcurrentNavigableMap<UUID, Todo> completedIndex = new ConcurrentSkipListMap<>(TodoIds.ORDER);
+
+    // Mutations hold the read side so that a journal rotation never falls between a record and its in-memory change
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+
+    public HeapTodoRepository() {
+        this(null);
+    }
+
+    /**
+     * Every mutation is appended to the given journal while its entry is locked, so records for the same id are
+     * journaled in the order they are applied. A null journal keeps the repository purely in memory.
+     */
+    public HeapTodoRepository(TodoJournal journal) {
+        super(journal);
+
+        MetricsRegistry.DEFAULT.gauge("todo_store_size", "Number of todos in the store", todoStore::size);
+        MetricsRegistry.DEFAULT.gauge("todo_index_size", "Number of todos in each secondary index", pendingIndex::size, "index", "pending");
+        MetricsRegistry.DEFAULT.gauge("todo_index_size", "Number of todos in each secondary index", completedIndex::size, "index", "completed");
+    }
+
+    @Override
+    public void snapshot() throws IOException {
+        if (journal == null) {
+            return;
+        }
+
+        final long segment;
+        rotationLock.writeLock().lock();
+        try {
+            segment = journal.rotate();
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+
+        // Written in id order, which also makes the index inserts on recovery cheaper
+        journal.writeSnapshot(segment, orderedIndex.values());
+    }
+
+    @Override
+    public List<Todo> getAll() {
+        return new ArrayList<>(todoStore.values());
+    }
+
+    @Override
+    public List<Todo> getByDone(final boolean isDone) {
+        return new ArrayList<>(indexFor(isDone).values());
+    }
+
+    @Override
+    public int streamAll(final UUID after, final int limit, final Consumer<Todo> consumer) {
+        return stream(orderedIndex, after, limit, consumer);
+    }
+
+    @Override
+    public int streamByDone(final boolean isDone, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        return stream(indexFor(isDone), after, limit, consumer);
+    }
+
+    @Override
+    public Optional<Todo> getById(final UUID id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        final long start = System.nanoTime();
+        try {
+            return Optional.ofNullable(todoStore.get(id));
+        } finally {
+            GET_BY_ID_TIMER.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<UUID, Todo> getByIds(final Collection<UUID> ids) {
+        final long start = System.nanoTime();
+        final Map<UUID, Todo> todos = new HashMap<>();
+        for (UUID id : ids) {
+            final Todo todo = todoStore.get(id);
+            if (todo != null) {
+                todos.put(id, todo);
+            }
+        }
+
+        GET_BY_IDS_TIMER.record(System.nanoTime() - start);
+        return todos;
+    }
+
+    @Override
+    public void deleteAllTodos() {
+        boolean deleted = false;
+        for (UUID id : todoStore.keySet()) {
+            deleted |= deleteTodo(id, todo -> true);
+        }
+
+        commit(deleted);
+    }
+
+    @Override
+    public int deleteByDone(final boolean isDone) {
+        int deleted = 0;
+        for (UUID id : indexFor(isDone).keySet()) {
+            if (deleteTodo(id, todo -> todo.isDone() == isDone)) {
+                deleted++;
+            }
+        }
+
+        commit(deleted > 0);
+        return deleted;
+    }
+
+    @Override
+    protected boolean insert(final Todo todo) {
+        final long start = System.nanoTime();
+        final Todo storedTodo;
+        beginMutation();
+        try {
+            storedTodo = todoStore.computeIfAbsent(todo.getId(), todoId -> {
+                if (journal != null) journal.appendPut(todo);
+                orderedIndex.put(todoId, todo);
+                indexFor(todo.isDone()).put(todoId, todo);
+                return todo;
+            });
+        } finally {
+            endMutation();
+        }
+        INSERT_TIMER.record(System.nanoTime() - start);
+
+        return storedTodo == todo;
+    }
+
+    @Override
+    protected boolean update(final UUID id, final String title, final String description, final String isDoneString) {
+        final long start = System.nanoTime();
+        final Todo updatedTodo;
+        beginMutation();
+        try {
+            updatedTodo = todoStore.computeIfPresent(id, (todoId, oldTodo) -> {
+                final Todo newTodo = new Todo(todoId);
+
+                final String titleToSet = (title == null) ? oldTodo.getTitle() : title;
+                newTodo.setTitle(titleToSet);
+
+                final String descriptionToSet = (description == null) ? oldTodo.getDescription() : description;
+                newTodo.setDescription(descriptionToSet);
+
+                final boolean isDoneToSet = (isDoneString == null) ? oldTodo.isDone() : Boolean.parseBoolean(isDoneString);
+                newTodo.setDone(isDoneToSet);
+
+                if (journal != null) journal.appendPut(newTodo);
+                orderedIndex.put(todoId, newTodo);
+                indexFor(oldTodo.isDone()).remove(todoId);
+                indexFor(isDoneToSet).put(todoId, newTodo);
+                return newTodo;
+            });
+        } finally {
+            endMutation();
+        }
+        UPDATE_TIMER.record(System.nanoTime() - start);
+
+        return updatedTodo != null;
+    }
+
+    @Override
+    protected boolean deleteTodo(final UUID id, final Predicate<Todo> condition) {
+        final long start = System.nanoTime();
+        final AtomicBoolean deleted = new AtomicBoolean(false);
+        beginMutation();
+        try {
+            todoStore.computeIfPresent(id, (todoId, oldTodo) -> {
+                if (!condition.test(oldTodo)) {
+                    return oldTodo;
+                }
+
+                if (journal != null) journal.appendDelete(todoId);
+                orderedIndex.remove(todoId);
+                indexFor(oldTodo.isDone()).remove(todoId);
+                deleted.set(true);
+                return null;
+            });
+        } finally {
+            endMutation();
+        }
+        DELETE_TIMER.record(System.nanoTime() - start);
+
+        return deleted.get();
+    }
+
+    private void beginMutation() {
+        if (journal != null) {
+            rotationLock.readLock().lock();
+        }
+    }
+
+    private void endMutation() {
+        if (journal != null) {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void restore(final Todo todo) {
+        final Todo oldTodo = todoStore.put(todo.getId(), todo);
+        if (oldTodo != null) {
+            indexFor(oldTodo.isDone()).remove(todo.getId());
+        }
+
+        orderedIndex.put(todo.getId(), todo);
+        indexFor(todo.isDone()).put(todo.getId(), todo);
+    }
+
+    @Override
+    protected void forget(final UUID id) {
+        final Todo oldTodo = todoStore.remove(id);
+        if (oldTodo != null) {
+            orderedIndex.remove(id);
+            indexFor(oldTodo.isDone()).remove(id);
+        }
+    }
+
+    // Keyset paging: seeking past the cursor costs O(log n) no matter how deep the page is
+    private static int stream(final NavigableMap<UUID, Todo> index, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        final long start = System.nanoTime();
+        final Collection<Todo> todos = (after == null) ? index.values() : index.tailMap(after, false).values();
+
+        int count = 0;
+        for (Todo todo : todos) {
+            if (limit > 0 && count == limit) {
+                break;
+            }
+
+            consumer.accept(todo);
+            count++;
+        }
+
+        STREAM_TIMER.record(System.nanoTime() - start);
+        return count;
+    }
+
+    // Secondary indexes are only ever mutated while holding the primary entry for the same id
+    private ConcurrentNavigableMap<UUID, Todo> indexFor(final boolean isDone) {
+        return isDone ? completedIndex : pendingIndex;
+    }
+}
@@ -0,0 +1,399 @@
+package restapi.repository;
+
+import restapi.metrics.MetricsRegistry;
+import restapi.model.Todo;
+import restapi.store.IdHeap;
+import restapi.store.IdIndex;
+import restapi.store.TodoArena;
+import restapi.store.TodoJournal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Keeps Todos as UTF-8 records in off-heap buffers, found through a primitive hash index keyed by their 128-bit
+ * ids, and only materializes Todo objects on reads. The heap holds about 40 bytes of
+ * primitive arrays per Todo and nothing the garbage collector has to trace.
+ *
+ * There is no ordered index: lists scan the hash index and keep the requested page in a bounded heap, so a page
+ * costs O(n log limit) rather than the O(log n) seek of the heap engine. Mutations are serialized by a single
+ * lock, while reads decode records after releasing it since records never change once written.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class OffHeapTodoRepository extends TodoRepository {
+    // The done flag of each Todo is kept in the index value next to the record address, so filters never touch the records
+    private final static long DONE_BIT = 1L << 62;
+
+    private final int chunkSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IdIndex index = new IdIndex(1024);
+    private TodoArena arena;
+    private int completedCount;
+
+    public OffHeapTodoRepository(int chunkSize) {
+        this(null, chunkSize);
+    }
+
+    public OffHeapTodoRepository(TodoJournal journal, int chunkSize) {
+        super(journal);
+        this.chunkSize = chunkSize;
+        this.arena = new TodoArena(chunkSize);
+
+        MetricsRegistry.DEFAULT.gauge("todo_store_size", "Number of todos in the store", locked(index::size));
+        MetricsRegistry.DEFAULT.gauge("todo_index_size", "Number of todos in each secondary index", locked(() -> index.size() - completedCount), "index", "pending");
+        MetricsRegistry.DEFAULT.gauge("todo_index_size", "Number of todos in each secondary index", locked(() -> completedCount), "index", "completed");
+        MetricsRegistry.DEFAULT.gauge("todo_offheap_bytes", "Off-heap memory held by Todo records", locked(() -> arena.getAllocatedBytes()), "state", "allocated");
+        MetricsRegistry.DEFAULT.gauge("todo_offheap_bytes", "Off-heap memory held by Todo records", locked(() -> arena.getLiveBytes()), "state", "live");
+    }
+
+    @Override
+    public void snapshot() throws IOException {
+        if (journal == null) {
+            return;
+        }
+
+        final long segment;
+        final long[] addresses;
+        final TodoArena source;
+        lock.writeLock().lock();
+        try {
+            segment = journal.rotate();
+            source = arena;
+            addresses = new long[index.size()];
+            int count = 0;
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                if (index.isOccupied(slot)) {
+                    addresses[count++] = addressOf(index.valueAt(slot));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        journal.writeSnapshot(segment, () -> Arrays.stream(addresses).mapToObj(source::read).iterator());
+    }
+
+    @Override
+    public List<Todo> getAll() {
+        final List<Todo> todos = new ArrayList<>();
+        select(null, null, 0, todos::add);
+        return todos;
+    }
+
+    @Override
+    public List<Todo> getByDone(final boolean isDone) {
+        final List<Todo> todos = new ArrayList<>();
+        select(isDone, null, 0, todos::add);
+        return todos;
+    }
+
+    @Override
+    public int streamAll(final UUID after, final int limit, final Consumer<Todo> consumer) {
+        return select(null, after, limit, consumer);
+    }
+
+    @Override
+    public int streamByDone(final boolean isDone, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        return select(isDone, after, limit, consumer);
+    }
+
+    @Override
+    public Optional<Todo> getById(final UUID id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        final long start = System.nanoTime();
+        final long value;
+        final TodoArena source;
+        lock.readLock().lock();
+        try {
+            value = index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            source = arena;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        final Optional<Todo> todo = (value == IdIndex.ABSENT) ? Optional.empty() : Optional.of(source.read(addressOf(value)));
+        GET_BY_ID_TIMER.record(System.nanoTime() - start);
+        return todo;
+    }
+
+    // One pass under the lock finds every record, and they are all decoded after it is released
+    @Override
+    public Map<UUID, Todo> getByIds(final Collection<UUID> ids) {
+        final long start = System.nanoTime();
+        final UUID[] found = new UUID[ids.size()];
+        final long[] addresses = new long[ids.size()];
+        int count = 0;
+        final TodoArena source;
+        lock.readLock().lock();
+        try {
+            for (UUID id : ids) {
+                final long value = index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                if (value != IdIndex.ABSENT) {
+                    found[count] = id;
+                    addresses[count++] = addressOf(value);
+                }
+            }
+            source = arena;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        final Map<UUID, Todo> todos = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            todos.put(found[i], source.read(addresses[i]));
+        }
+
+        GET_BY_IDS_TIMER.record(System.nanoTime() - start);
+        return todos;
+    }
+
+    @Override
+    public void deleteAllTodos() {
+        boolean deleted = false;
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                if (index.isOccupied(slot)) {
+                    if (journal != null) journal.appendDelete(new UUID(index.msbAt(slot), index.lsbAt(slot)));
+                    deleted = true;
+                }
+            }
+
+            index.clear();
+            arena = new TodoArena(chunkSize);
+            completedCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        commit(deleted);
+    }
+
+    @Override
+    public int deleteByDone(final boolean isDone) {
+        int deleted = 0;
+        lock.writeLock().lock();
+        try {
+            // Collected first, since removing from the index moves entries between slots
+            final long[] msbs = new long[isDone ? completedCount : index.size() - completedCount];
+            final long[] lsbs = new long[msbs.length];
+            for (int slot = 0; slot < index.capacity() && deleted < msbs.length; slot++) {
+                if (index.isOccupied(slot) && isDone(index.valueAt(slot)) == isDone) {
+                    msbs[deleted] = index.msbAt(slot);
+                    lsbs[deleted] = index.lsbAt(slot);
+                    deleted++;
+                }
+            }
+
+            for (int i = 0; i < deleted; i++) {
+                if (journal != null) journal.appendDelete(new UUID(msbs[i], lsbs[i]));
+                remove(msbs[i], lsbs[i]);
+            }
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        commit(deleted > 0);
+        return deleted;
+    }
+
+    @Override
+    protected boolean insert(final Todo todo) {
+        final UUID id = todo.getId();
+        final long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            final long msb = id.getMostSignificantBits();
+            final long lsb = id.getLeastSignificantBits();
+            if (index.get(msb, lsb) != IdIndex.ABSENT) {
+                return false;
+            }
+
+            if (journal != null) journal.appendPut(todo);
+            put(msb, lsb, todo);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            INSERT_TIMER.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    protected boolean update(final UUID id, final String title, final String description, final String isDoneString) {
+        final long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            final long msb = id.getMostSignificantBits();
+            final long lsb = id.getLeastSignificantBits();
+            final long value = index.get(msb, lsb);
+            if (value == IdIndex.ABSENT) {
+                return false;
+            }
+
+            final Todo oldTodo = arena.read(addressOf(value));
+            final Todo newTodo = new Todo(id);
+            newTodo.setTitle((title == null) ? oldTodo.getTitle() : title);
+            newTodo.setDescription((description == null) ? oldTodo.getDescription() : description);
+            newTodo.setDone((isDoneString == null) ? oldTodo.isDone() : Boolean.parseBoolean(isDoneString));
+
+            if (journal != null) journal.appendPut(newTodo);
+            put(msb, lsb, newTodo);
+            compactIfWasteful();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            UPDATE_TIMER.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    protected boolean deleteTodo(final UUID id, final Predicate<Todo> condition) {
+        final long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            final long msb = id.getMostSignificantBits();
+            final long lsb = id.getLeastSignificantBits();
+            final long value = index.get(msb, lsb);
+            if (value == IdIndex.ABSENT || !condition.test(arena.read(addressOf(value)))) {
+                return false;
+            }
+
+            if (journal != null) journal.appendDelete(id);
+            remove(msb, lsb);
+            compactIfWasteful();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            DELETE_TIMER.record(System.nanoTime() - start);
+        }
+    }
+
+    private int select(final Boolean isDone, final UUID after, final int limit, final Consumer<Todo> consumer) {
+        final long start = System.nanoTime();
+
+        final IdHeap page;
+        final TodoArena source;
+        lock.readLock().lock();
+        try {
+            source = arena;
+            final int matching = (isDone == null) ? index.size() : (isDone ? completedCount : index.size() - completedCount);
+            page = new IdHeap((limit > 0) ? Math.min(limit, matching) : matching);
+
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                if (!index.isOccupied(slot)) {
+                    continue;
+                }
+
+                final long value = index.valueAt(slot);
+                if (isDone != null && isDone(value) != isDone) {
+                    continue;
+                }
+
+                final long msb = index.msbAt(slot);
+                final long lsb = index.lsbAt(slot);
+                if (after != null && IdHeap.compare(msb, lsb, after.getMostSignificantBits(), after.getLeastSignificantBits()) <= 0) {
+                    continue;
+                }
+
+                page.offer(msb, lsb, value);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        page.sort();
+        for (int i = 0; i < page.size(); i++) {
+            consumer.accept(source.read(addressOf(page.valueAt(i))));
+        }
+
+        STREAM_TIMER.record(System.nanoTime() - start);
+        return page.size();
+    }
+
+    private void put(final long msb, final long lsb, final Todo todo) {
+        final long address = arena.append(msb, lsb, todo.getTitle(), todo.getDescription(), todo.isDone());
+        final long previous = index.put(msb, lsb, todo.isDone() ? address | DONE_BIT : address);
+        if (previous != IdIndex.ABSENT) {
+            arena.free(addressOf(previous));
+            if (isDone(previous)) completedCount--;
+        }
+
+        if (todo.isDone()) completedCount++;
+    }
+
+    private void remove(final long msb, final long lsb) {
+        final long previous = index.remove(msb, lsb);
+        if (previous != IdIndex.ABSENT) {
+            arena.free(addressOf(previous));
+            if (isDone(previous)) completedCount--;
+        }
+    }
+
+    // Copies the live records into a fresh arena once more than half of the written bytes are dead
+    private void compactIfWasteful() {
+        final long deadBytes = arena.getDeadBytes();
+        if (deadBytes < chunkSize || deadBytes < arena.getLiveBytes()) {
+            return;
+        }
+
+        final TodoArena compacted = new TodoArena(chunkSize);
+        for (int slot = 0; slot < index.capacity(); slot++) {
+            if (index.isOccupied(slot)) {
+                final long value = index.valueAt(slot);
+                final long address = compacted.copy(arena, addressOf(value));
+                index.setValueAt(slot, isDone(value) ? address | DONE_BIT : address);
+            }
+        }
+
+        arena = compacted;
+    }
+
+    @Override
+    protected void restore(final Todo todo) {
+        put(todo.getId().getMostSignificantBits(), todo.getId().getLeastSignificantBits(), todo);
+        compactIfWasteful();
+    }
+
+    @Override
+    protected void forget(final UUID id) {
+        remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    // Gauges are read on the metrics thread, and the fields behind them are plain and rewritten by compaction
+    private LongSupplier locked(final LongSupplier value) {
+        return () -> {
+            lock.readLock().lock();
+            try {
+                return value.getAsLong();
+            } finally {
+                lock.readLock().unlock();
+            }
+        };
+    }
+
+    private static long addressOf(final long value) {
+        return value & ~DONE_BIT;
+    }
+
+    private static boolean isDone(final long value) {
+        return (value & DONE_BIT) != 0;
+    }
+}
@@ -1,104 +1,183 @@
 package restapi.repository;
 
+import restapi.metrics.LatencyHistogram;
+import restapi.metrics.MetricsRegistry;
 import restapi.model.Todo;
+import restapi.model.TodoOperation;
+import restapi.model.TodoOperationResult;
+import restapi.store.TodoJournal;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
+ * What the storage engines share: their journal, the version, and the public mutations, which apply a change
+ * through the engine and then commit it. Engines keep the Todos and their indexes.
+ *
  * @author Abhishek Gupta
  *         https://github.com/abhigupta912
  */
-public class TodoRepository {
-    private final Set<Todo> todoStore = new HashSet<>();
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-
-    public List<Todo> getAll() {
-        try {
-            lock.readLock().lock();
-            return todoStore.stream().collect(Collectors.toList());
-        } finally {
-            lock.readLock().unlock();
-        }
+public abstract class TodoRepository {
+    final static LatencyHistogram GET_BY_ID_TIMER = timer("getById");
+    final static LatencyHistogram GET_BY_IDS_TIMER = timer("getByIds");
+    final static LatencyHistogram STREAM_TIMER = timer("stream");
+    final static LatencyHistogram INSERT_TIMER = timer("insertTodo");
+    final static LatencyHistogram UPDATE_TIMER = timer("updateTodo");
+    final static LatencyHistogram DELETE_TIMER = timer("deleteTodo");
+    final static LatencyHistogram BATCH_TIMER = timer("executeBatch");
+
+    protected final TodoJournal journal;
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param journal the journal that every mutation is appended to, or null to keep the repository purely in memory
+     */
+    protected TodoRepository(TodoJournal journal) {
+        this.journal = journal;
     }
 
-    public Optional<Todo> getById(final String id) {
-        try {
-            lock.readLock().lock();
-            return todoStore.stream().filter(todo -> todo.getId().equals(id)).findFirst();
-        } finally {
-            lock.readLock().unlock();
+    /**
+     * Rebuilds the store from the journal. Must be called before the repository is used.
+     */
+    public void recover() throws IOException {
+        if (journal != null) {
+            journal.recover(this::restore, this::forget);
         }
     }
 
+    /**
+     * Starts a new journal segment and writes a snapshot that lets the older segments be deleted.
+     */
+    public abstract void snapshot() throws IOException;
+
+    /**
+     * Counts the changes made since startup. It is bumped after each change is applied, so a reader that takes the
+     * version before reading never sees data older than it.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public abstract List<Todo> getAll();
+
+    public abstract List<Todo> getByDone(boolean isDone);
+
+    public abstract int streamAll(UUID after, int limit, Consumer<Todo> consumer);
+
+    public abstract int streamByDone(boolean isDone, UUID after, int limit, Consumer<Todo> consumer);
+
+    public abstract Optional<Todo> getById(UUID id);
+
+    /**
+     * Ids that match no Todo are left out of the result.
+     */
+    public abstract Map<UUID, Todo> getByIds(Collection<UUID> ids);
+
     public boolean insertTodo(final Todo todo) {
-        final Optional<Todo> todoById = getById(todo.getId());
-        if (todoById.isPresent()) {
+        if (todo == null || todo.getId() == null) {
             return false;
         }
 
-        try {
-            lock.writeLock().lock();
-            todoStore.add(todo);
-            return true;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        return commit(insert(todo));
     }
 
-    public boolean updateTodo(final String id, final String title, final String description, final String isDoneString) {
-        final Optional<Todo> todoById = getById(id);
-        if (!todoById.isPresent()) {
+    public boolean updateTodo(final UUID id, final String title, final String description, final String isDoneString) {
+        if (id == null) {
             return false;
         }
 
-        try {
-            lock.writeLock().lock();
-            final Todo oldTodo = todoById.get();
-            final Todo newTodo = new Todo(id);
-
-            final String titleToSet = (title == null) ? oldTodo.getTitle() : title;
-            newTodo.setTitle(titleToSet);
-
-            final String descriptionToSet = (description == null) ? oldTodo.getDescription() : description;
-            newTodo.setDescription(descriptionToSet);
+        return commit(update(id, title, description, isDoneString));
+    }
 
-            final boolean isDoneToSet = (isDoneString == null) ? oldTodo.isDone() : Boolean.parseBoolean(isDoneString);
-            newTodo.setDone(isDoneToSet);
+    public abstract void deleteAllTodos();
 
-            todoStore.remove(oldTodo);
-            todoStore.add(newTodo);
-            return true;
-        } finally {
-            lock.writeLock().unlock();
+    public boolean deleteTodoById(final UUID id) {
+        if (id == null) {
+            return false;
         }
+
+        return commit(deleteTodo(id, todo -> true));
     }
 
-    public void deleteAllTodos() {
-        try {
-            lock.writeLock().lock();
-            todoStore.clear();
-        } finally {
-            lock.writeLock().unlock();
+    public abstract int deleteByDone(boolean isDone);
+
+    public List<TodoOperationResult> executeBatch(final List<TodoOperation> operations) {
+        final long start = System.nanoTime();
+        final List<TodoOperationResult> results = new ArrayList<>(operations.size());
+
+        boolean changed = false;
+        for (TodoOperation operation : operations) {
+            switch (operation.getOp()) {
+                case CREATE:
+                    final Todo todo = operation.toTodo();
+                    final boolean inserted = insert(todo);
+                    results.add(new TodoOperationResult(operation.getOp(), todo.getId(), inserted));
+                    changed |= inserted;
+                    break;
+                case UPDATE:
+                    final boolean updated = (operation.getId() != null) && update(operation.getId(), operation.getTitle(), operation.getDescription(), operation.getDoneString());
+                    results.add(new TodoOperationResult(operation.getOp(), operation.getId(), updated));
+                    changed |= updated;
+                    break;
+                case DELETE:
+                    final boolean deleted = (operation.getId() != null) && deleteTodo(operation.getId(), existing -> true);
+                    results.add(new TodoOperationResult(operation.getOp(), operation.getId(), deleted));
+                    changed |= deleted;
+                    break;
+            }
         }
+
+        // A single group commit covers the whole batch
+        commit(changed);
+        BATCH_TIMER.record(System.nanoTime() - start);
+        return results;
     }
 
-    public boolean deleteTodoById(final String id) {
-        final Optional<Todo> todoById = getById(id);
-        if (!todoById.isPresent()) {
-            return false;
+    /**
+     * Journals and applies the insert without committing it.
+     */
+    protected abstract boolean insert(Todo todo);
+
+    /**
+     * Journals and applies the update without committing it.
+     */
+    protected abstract boolean update(UUID id, String title, String description, String isDoneString);
+
+    /**
+     * Journals and applies the delete, if the Todo meets the condition, without committing it.
+     */
+    protected abstract boolean deleteTodo(UUID id, Predicate<Todo> condition);
+
+    /**
+     * Applies a Todo replayed from the journal. Recovery runs on a single thread before any request is served.
+     */
+    protected abstract void restore(Todo todo);
+
+    /**
+     * Applies a delete replayed from the journal.
+     */
+    protected abstract void forget(UUID id);
+
+    protected boolean commit(final boolean changed) {
+        if (changed) {
+            version.incrementAndGet();
+            if (journal != null) {
+                journal.commit();
+            }
         }
 
-        try {
-            lock.writeLock().lock();
-            todoStore.remove(todoById.get());
-            return true;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        return changed;
+    }
+
+    private static LatencyHistogram timer(final String method) {
+        return MetricsRegistry.DEFAULT.histogram("todo_repository_duration_seconds", "Time spent in repository methods", "method", method);
     }
 }
@@ -1,11 +1,18 @@
 package restapi.service;
 
 import restapi.model.Todo;
+import restapi.model.TodoOperation;
+import restapi.model.TodoOperationResult;
 import restapi.repository.TodoRepository;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * @author Abhishek Gupta
@@ -18,19 +25,35 @@ public class TodoService {
         this.todoRepository = todoRepository;
     }
 
+    public long getVersion() {
+        return todoRepository.getVersion();
+    }
+
     public List<Todo> getAllTodos() {
         return todoRepository.getAll();
     }
 
     public List<Todo> getPendingTodos() {
-        return getAllTodos().stream().filter(todo -> !todo.isDone()).collect(Collectors.toList());
+        return todoRepository.getByDone(false);
     }
 
     public List<Todo> getCompletedTodos() {
-        return getAllTodos().stream().filter(todo -> todo.isDone()).collect(Collectors.toList());
+        return todoRepository.getByDone(true);
+    }
+
+    public int streamAllTodos(final UUID after, final int limit, final Consumer<Todo> consumer) {
+        return todoRepository.streamAll(after, limit, consumer);
+    }
+
+    public int streamPendingTodos(final UUID after, final int limit, final Consumer<Todo> consumer) {
+        return todoRepository.streamByDone(false, after, limit, consumer);
+    }
+
+    public int streamCompletedTodos(final UUID after, final int limit, final Consumer<Todo> consumer) {
+        return todoRepository.streamByDone(true, after, limit, consumer);
     }
 
-    public Todo getTodoById(final String id) {
+    public Todo getTodoById(final UUID id) {
         final Optional<Todo> todoById = todoRepository.getById(id);
         if (todoById.isPresent()) {
             return todoById.get();
@@ -39,11 +62,26 @@ public class TodoService {
         }
     }
 
+    /**
+     * @return the Todos in the order of the given ids, with null in place of each id that matches none
+     */
+    public List<Todo> getTodosByIds(final List<UUID> ids) {
+        final Set<UUID> distinctIds = new HashSet<>(ids);
+        distinctIds.remove(null);
+        final Map<UUID, Todo> todos = todoRepository.getByIds(distinctIds);
+
+        final List<Todo> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            result.add((id == null) ? null : todos.get(id));
+        }
+        return result;
+    }
+
     public boolean addTodo(final Todo todo) {
         return todoRepository.insertTodo(todo);
     }
 
-    public boolean updateTodo(final String id, final String title, final String description, final String isDoneString) {
+    public boolean updateTodo(final UUID id, final String title, final String description, final String isDoneString) {
         return todoRepository.updateTodo(id, title, description, isDoneString);
     }
 
@@ -51,11 +89,15 @@ public class TodoService {
         todoRepository.deleteAllTodos();
     }
 
-    public boolean deleteTodoById(final String id) {
+    public boolean deleteTodoById(final UUID id) {
         return todoRepository.deleteTodoById(id);
     }
 
-    public void deleteCompletedTodos() {
-        getCompletedTodos().stream().forEach(todo -> todoRepository.deleteTodoById(todo.getId()));
+    public int deleteCompletedTodos() {
+        return todoRepository.deleteByDone(true);
+    }
+
+    public List<TodoOperationResult> executeBatch(final List<TodoOperation> operations) {
+        return todoRepository.executeBatch(operations);
     }
 }
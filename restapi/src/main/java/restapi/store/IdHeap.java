@@ -0,0 +1,102 @@
+package restapi.store;
+
+/**
+ * Keeps the entries with the smallest ids offered to it, up to a fixed capacity, in primitive arrays. Ids compare
+ * as unsigned 128-bit numbers, which is also the order of their canonical UUID strings. Selecting a page of n
+ * out of N entries costs O(N log n) without boxing a single id.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class IdHeap {
+    private final long[] msbs;
+    private final long[] lsbs;
+    private final long[] values;
+    private int size;
+
+    public IdHeap(final int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        values = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void offer(final long msb, final long lsb, final long value) {
+        if (size < values.length) {
+            set(size, msb, lsb, value);
+            siftUp(size++);
+        } else if (size > 0 && compare(msb, lsb, msbs[0], lsbs[0]) < 0) {
+            // Replaces the largest entry kept so far
+            set(0, msb, lsb, value);
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Sorts the kept entries in ascending id order; the heap must not be offered anything afterwards.
+     */
+    public void sort() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    public long valueAt(final int index) {
+        return values[index];
+    }
+
+    public static int compare(final long msb, final long lsb, final long otherMsb, final long otherLsb) {
+        final int result = Long.compareUnsigned(msb, otherMsb);
+        return (result != 0) ? result : Long.compareUnsigned(lsb, otherLsb);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (compare(msbs[index], lsbs[index], msbs[parent], lsbs[parent]) <= 0) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, final int end) {
+        while (true) {
+            final int left = 2 * index + 1;
+            if (left >= end) {
+                break;
+            }
+
+            final int right = left + 1;
+            int largest = left;
+            if (right < end && compare(msbs[right], lsbs[right], msbs[left], lsbs[left]) > 0) {
+                largest = right;
+            }
+
+            if (compare(msbs[largest], lsbs[largest], msbs[index], lsbs[index]) <= 0) {
+                break;
+            }
+            swap(index, largest);
+            index = largest;
+        }
+    }
+
+    private void set(final int index, final long msb, final long lsb, final long value) {
+        msbs[index] = msb;
+        lsbs[index] = lsb;
+        values[index] = value;
+    }
+
+    private void swap(final int i, final int j) {
+        final long msb = msbs[i];
+        final long lsb = lsbs[i];
+        final long value = values[i];
+        set(i, msbs[j], lsbs[j], values[j]);
+        set(j, msb, lsb, value);
+    }
+}
@@ -0,0 +1,188 @@
+package restapi.store;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from a 128-bit id to a non-negative long, stored in three primitive arrays so that the
+ * garbage collector never has to trace its entries. Collisions are resolved by linear probing and removals shift
+ * the following entries back, so no tombstones are left behind. Not thread safe.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class IdIndex {
+    public final static long ABSENT = -1L;
+
+    private final static float LOAD_FACTOR = 0.6f;
+
+    private long[] msbs;
+    private long[] lsbs;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public IdIndex(final int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public long get(final long msb, final long lsb) {
+        for (int slot = slotFor(msb, lsb); ; slot = (slot + 1) & mask) {
+            final long value = values[slot];
+            if (value == ABSENT) {
+                return ABSENT;
+            }
+
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @return the value previously stored for the id, or ABSENT
+     */
+    public long put(final long msb, final long lsb, final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative: " + value);
+        }
+
+        for (int slot = slotFor(msb, lsb); ; slot = (slot + 1) & mask) {
+            final long previous = values[slot];
+            if (previous == ABSENT) {
+                msbs[slot] = msb;
+                lsbs[slot] = lsb;
+                values[slot] = value;
+                if (++size > resizeThreshold) {
+                    resize();
+                }
+                return ABSENT;
+            }
+
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                values[slot] = value;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return the value that was stored for the id, or ABSENT
+     */
+    public long remove(final long msb, final long lsb) {
+        int slot = slotFor(msb, lsb);
+        while (true) {
+            final long value = values[slot];
+            if (value == ABSENT) {
+                return ABSENT;
+            }
+
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                shiftBack(slot);
+                size--;
+                return value;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void clear() {
+        allocate(tableSizeFor(0));
+    }
+
+    public boolean isOccupied(final int slot) {
+        return values[slot] != ABSENT;
+    }
+
+    public long msbAt(final int slot) {
+        return msbs[slot];
+    }
+
+    public long lsbAt(final int slot) {
+        return lsbs[slot];
+    }
+
+    public long valueAt(final int slot) {
+        return values[slot];
+    }
+
+    public void setValueAt(final int slot, final long value) {
+        values[slot] = value;
+    }
+
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == ABSENT) {
+                break;
+            }
+
+            // An entry may only move back if the hole lies between its home slot and its current slot
+            final int home = slotFor(msbs[slot], lsbs[slot]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                msbs[hole] = msbs[slot];
+                lsbs[hole] = lsbs[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+
+        values[hole] = ABSENT;
+    }
+
+    private void resize() {
+        final long[] oldMsbs = msbs;
+        final long[] oldLsbs = lsbs;
+        final long[] oldValues = values;
+        allocate(oldValues.length * 2);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != ABSENT) {
+                int slot = slotFor(oldMsbs[i], oldLsbs[i]);
+                while (values[slot] != ABSENT) {
+                    slot = (slot + 1) & mask;
+                }
+                msbs[slot] = oldMsbs[i];
+                lsbs[slot] = oldLsbs[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, ABSENT);
+        mask = capacity - 1;
+        size = 0;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotFor(final long msb, final long lsb) {
+        // Murmur3 finalizer, so that ids which are not random still spread over the table
+        long hash = msb * 31 + lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private static int tableSizeFor(final int expectedSize) {
+        final int minimum = Math.max(16, (int) Math.ceil(expectedSize / LOAD_FACTOR));
+        return Integer.highestOneBit(minimum - 1) << 1;
+    }
+}
@@ -0,0 +1,175 @@
+package restapi.store;
+
+import restapi.model.Todo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Append-only Todo records in direct buffers outside the Java heap. A record is addressed by its chunk and offset
+ * packed into a long, and never moves or changes once written apart from its dead flag, so readers holding an
+ * address can decode it without locking. Space left behind by updates and deletes is only reclaimed by copying the
+ * live records into a new arena.
+ *
+ * Record layout: int size | byte flags | long msb | long lsb | int titleLength | title | int descriptionLength | description
+ *
+ * Appends and frees must be serialized by the caller.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoArena {
+    private final static int HEADER_SIZE = 4 + 1 + 8 + 8;
+    private final static int FLAGS_OFFSET = 4;
+    private final static int MSB_OFFSET = 5;
+    private final static int LSB_OFFSET = 13;
+    private final static byte DONE = 1;
+    private final static byte DEAD = 2;
+
+    private final int chunkSize;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int writeOffset;
+    private long allocatedBytes;
+    private long usedBytes;
+    private long liveBytes;
+
+    public TodoArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public long append(final long msb, final long lsb, final String title, final String description, final boolean isDone) {
+        final byte[] titleBytes = (title == null) ? null : title.getBytes(StandardCharsets.UTF_8);
+        final byte[] descriptionBytes = (description == null) ? null : description.getBytes(StandardCharsets.UTF_8);
+        final int size = HEADER_SIZE + 4 + length(titleBytes) + 4 + length(descriptionBytes);
+
+        final ByteBuffer chunk = chunkFor(size);
+        final int offset = writeOffset;
+        chunk.putInt(offset, size);
+        chunk.put(offset + FLAGS_OFFSET, isDone ? DONE : 0);
+        chunk.putLong(offset + MSB_OFFSET, msb);
+        chunk.putLong(offset + LSB_OFFSET, lsb);
+        final int descriptionOffset = putBytes(chunk, offset + HEADER_SIZE, titleBytes);
+        putBytes(chunk, descriptionOffset, descriptionBytes);
+
+        writeOffset += size;
+        usedBytes += size;
+        liveBytes += size;
+        return address(chunks.length - 1, offset);
+    }
+
+    /**
+     * Copies a record from another arena without decoding it.
+     */
+    public long copy(final TodoArena source, final long sourceAddress) {
+        final ByteBuffer sourceChunk = source.chunk(sourceAddress);
+        final int sourceOffset = offset(sourceAddress);
+        final int size = sourceChunk.getInt(sourceOffset);
+
+        final ByteBuffer chunk = chunkFor(size);
+        final ByteBuffer record = sourceChunk.duplicate();
+        record.limit(sourceOffset + size).position(sourceOffset);
+        final ByteBuffer target = chunk.duplicate();
+        target.position(writeOffset);
+        target.put(record);
+
+        final int offset = writeOffset;
+        writeOffset += size;
+        usedBytes += size;
+        liveBytes += size;
+        return address(chunks.length - 1, offset);
+    }
+
+    public void free(final long address) {
+        final ByteBuffer chunk = chunk(address);
+        final int offset = offset(address);
+        chunk.put(offset + FLAGS_OFFSET, (byte) (chunk.get(offset + FLAGS_OFFSET) | DEAD));
+        liveBytes -= chunk.getInt(offset);
+    }
+
+    public Todo read(final long address) {
+        final ByteBuffer chunk = chunk(address);
+        final int offset = offset(address);
+
+        final Todo todo = new Todo(new UUID(chunk.getLong(offset + MSB_OFFSET), chunk.getLong(offset + LSB_OFFSET)));
+        final ByteBuffer fields = chunk.duplicate();
+        fields.position(offset + HEADER_SIZE);
+        todo.setTitle(getString(fields));
+        todo.setDescription(getString(fields));
+        todo.setDone((chunk.get(offset + FLAGS_OFFSET) & DONE) != 0);
+        return todo;
+    }
+
+    public boolean isDone(final long address) {
+        return (chunk(address).get(offset(address) + FLAGS_OFFSET) & DONE) != 0;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public long getDeadBytes() {
+        return usedBytes - liveBytes;
+    }
+
+    private ByteBuffer chunkFor(final int size) {
+        final ByteBuffer[] current = chunks;
+        if (current.length > 0 && current[current.length - 1].capacity() - writeOffset >= size) {
+            return current[current.length - 1];
+        }
+
+        // Records larger than a chunk get a chunk of their own
+        final ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, size));
+        final ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = chunk;
+        chunks = grown;
+        writeOffset = 0;
+        allocatedBytes += chunk.capacity();
+        return chunk;
+    }
+
+    private ByteBuffer chunk(final long address) {
+        return chunks[(int) (address >>> 32)];
+    }
+
+    private static int offset(final long address) {
+        return (int) address;
+    }
+
+    private static long address(final int chunk, final int offset) {
+        return ((long) chunk << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int length(final byte[] bytes) {
+        return (bytes == null) ? 0 : bytes.length;
+    }
+
+    private static int putBytes(final ByteBuffer chunk, final int offset, final byte[] bytes) {
+        if (bytes == null) {
+            chunk.putInt(offset, -1);
+            return offset + 4;
+        }
+
+        chunk.putInt(offset, bytes.length);
+        final ByteBuffer target = chunk.duplicate();
+        target.position(offset + 4);
+        target.put(bytes);
+        return offset + 4 + bytes.length;
+    }
+
+    private static String getString(final ByteBuffer fields) {
+        final int length = fields.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        fields.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package restapi.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoDataStore {
+    private final static Logger logger = LoggerFactory.getLogger(TodoDataStore.class);
+
+    public static Properties loadProperties(final String fileName) {
+        final Properties properties = new Properties();
+
+        try (InputStream stream = TodoDataStore.class.getResourceAsStream(fileName)) {
+            if (stream == null) {
+                throw new FileNotFoundException(fileName);
+            }
+
+            properties.load(stream);
+            return properties;
+        } catch (FileNotFoundException e) {
+            logger.error("Store properties file: {} not found", fileName);
+            logger.error("Error initializing store", e);
+        } catch (IOException e) {
+            logger.error("Unable to read properties file: {}", fileName);
+            logger.error("Error initializing store", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the journal configured by the given properties, or null when no dataDirectory is set and the store
+     *         should stay purely in memory
+     */
+    public static TodoJournal createJournal(final Properties properties) {
+        final String dataDirectory = properties.getProperty("dataDirectory", "").trim();
+        if (dataDirectory.isEmpty()) {
+            return null;
+        }
+
+        final TodoJournal.SyncMode syncMode = TodoJournal.SyncMode.valueOf(properties.getProperty("journalSyncMode", "batch").trim().toUpperCase());
+        final long syncIntervalMillis = Long.parseLong(properties.getProperty("journalSyncIntervalMillis", "10").trim());
+        logger.info("Journaling to {} with sync mode {}", dataDirectory, syncMode);
+        return new TodoJournal(Paths.get(dataDirectory), syncMode, syncIntervalMillis);
+    }
+}
@@ -0,0 +1,489 @@
+package restapi.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import restapi.metrics.LatencyHistogram;
+import restapi.metrics.MetricsRegistry;
+import restapi.model.Todo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Write-ahead log of Todo mutations plus the snapshots that let it be truncated.
+ *
+ * Appends only copy a framed record into an in-memory buffer. A single flusher thread swaps that buffer out,
+ * writes it to the current segment and forces it to disk, so every record appended while one fsync is running
+ * is made durable by the next one. Records carry the full state of a Todo (or its deletion), which makes replay
+ * idempotent: a snapshot taken after a segment rotation may already contain some of the records of the newer
+ * segments without affecting the recovered state.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoJournal implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(TodoJournal.class);
+
+    private final static String SEGMENT_PREFIX = "wal-";
+    private final static String SEGMENT_SUFFIX = ".log";
+    private final static String SNAPSHOT_PREFIX = "snapshot-";
+    private final static String SNAPSHOT_SUFFIX = ".dat";
+    private final static String TEMP_SUFFIX = ".tmp";
+    private final static int SNAPSHOT_MAGIC = 0x544f444f;
+    private final static int SNAPSHOT_VERSION = 1;
+    private final static int RECORD_HEADER_SIZE = 8;
+    private final static int MAX_RECORD_SIZE = 64 << 20;
+    private final static int INITIAL_BUFFER_SIZE = 64 << 10;
+    private final static int IO_BUFFER_SIZE = 1 << 20;
+
+    private final static LatencyHistogram SYNC_TIMER = MetricsRegistry.DEFAULT.histogram("todo_journal_sync_seconds",
+            "Time spent writing and forcing a batch of journal records");
+    private final static LatencyHistogram SNAPSHOT_TIMER = MetricsRegistry.DEFAULT.histogram("todo_journal_snapshot_seconds",
+            "Time spent writing a snapshot");
+
+    public enum SyncMode {
+        /** Records are written to the OS by the flusher but never forced */
+        NONE,
+        /** Records are forced every sync interval; writers do not wait, so at most one interval is lost on a crash */
+        BATCH,
+        /** Writers wait until the group commit containing their records has been forced */
+        COMMIT
+    }
+
+    private final Path directory;
+    private final SyncMode syncMode;
+    private final long syncIntervalMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private ByteBuffer active = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long appendedPosition;
+    private long durablePosition;
+    private boolean flushRequested;
+    private boolean closed;
+    private IOException failure;
+
+    private final Object ioLock = new Object();
+    private FileChannel segment;
+    private long segmentNumber;
+    private Thread flusher;
+
+    public TodoJournal(Path directory, SyncMode syncMode, long syncIntervalMillis) {
+        this.directory = directory;
+        this.syncMode = syncMode;
+        this.syncIntervalMillis = Math.max(1, syncIntervalMillis);
+    }
+
+    /**
+     * Loads the latest snapshot and replays the segments written after it, then opens a new segment and starts
+     * the flusher. Must be called once before anything is appended.
+     */
+    public void recover(final Consumer<Todo> onPut, final Consumer<UUID> onDelete) throws IOException {
+        Files.createDirectories(directory);
+        deleteFiles(TEMP_SUFFIX);
+
+        final long startTime = System.nanoTime();
+        final List<Long> snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long nextSegment = 0;
+        if (!snapshots.isEmpty()) {
+            nextSegment = snapshots.get(snapshots.size() - 1);
+            final long count = readSnapshot(file(SNAPSHOT_PREFIX, nextSegment, SNAPSHOT_SUFFIX), onPut);
+            logger.info("Loaded {} Todos from snapshot {}", count, nextSegment);
+        }
+
+        for (long number : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number >= nextSegment) {
+                final long count = replaySegment(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX), onPut, onDelete);
+                logger.info("Replayed {} records from segment {}", count, number);
+                nextSegment = number + 1;
+            }
+        }
+
+        logger.info("Recovered store from {} in {} ms", directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        synchronized (ioLock) {
+            segmentNumber = nextSegment;
+            segment = openSegment(segmentNumber);
+        }
+
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void appendPut(final Todo todo) {
+        append(TodoRecords.encodePut(todo));
+    }
+
+    public void appendDelete(final UUID id) {
+        append(TodoRecords.encodeDelete(id));
+    }
+
+    /**
+     * Waits for everything appended so far to be durable when running in COMMIT mode; returns immediately otherwise.
+     */
+    public void commit() {
+        if (syncMode == SyncMode.COMMIT) {
+            sync();
+        }
+    }
+
+    /**
+     * Waits for everything appended so far to be written out, regardless of the sync mode.
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            final long target = appendedPosition;
+            while (durablePosition < target) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal failed", failure);
+                }
+
+                flushRequested = true;
+                dataAvailable.signal();
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment. The caller must make sure nothing is appended while this runs.
+     *
+     * @return the number of the new segment, which a snapshot of the current state may be written for
+     */
+    public long rotate() throws IOException {
+        sync();
+
+        synchronized (ioLock) {
+            segment.force(false);
+            segment.close();
+            segmentNumber++;
+            segment = openSegment(segmentNumber);
+            return segmentNumber;
+        }
+    }
+
+    /**
+     * Writes the given Todos as the snapshot for the given segment, then deletes the segments and snapshots it replaces.
+     */
+    public synchronized long writeSnapshot(final long number, final Iterable<Todo> todos) throws IOException {
+        final long startTime = System.nanoTime();
+        final Path snapshotFile = file(SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX);
+        final Path tempFile = directory.resolve(snapshotFile.getFileName() + TEMP_SUFFIX);
+
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final CRC32 crc = new CRC32();
+            final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE), crc));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(number);
+            for (Todo todo : todos) {
+                out.writeBoolean(true);
+                TodoRecords.writeTodo(out, todo);
+                count++;
+            }
+            out.writeBoolean(false);
+            out.writeLong(crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        for (long older : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (older < number) Files.deleteIfExists(file(SEGMENT_PREFIX, older, SEGMENT_SUFFIX));
+        }
+        for (long older : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (older < number) Files.deleteIfExists(file(SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX));
+        }
+
+        final long elapsed = System.nanoTime() - startTime;
+        SNAPSHOT_TIMER.record(elapsed);
+        logger.info("Wrote snapshot {} with {} Todos in {} ms", number, count, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            flushRequested = true;
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (ioLock) {
+            if (segment != null) {
+                segment.force(true);
+                segment.close();
+            }
+        }
+    }
+
+    private void append(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        lock.lock();
+        try {
+            if (closed || failure != null) {
+                throw new IllegalStateException("Journal is not accepting writes");
+            }
+
+            final int size = RECORD_HEADER_SIZE + payload.length;
+            if (active.remaining() < size) {
+                final ByteBuffer grown = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + size));
+                active.flip();
+                grown.put(active);
+                active = grown;
+            }
+
+            active.putInt(payload.length);
+            active.putInt((int) crc.getValue());
+            active.put(payload);
+            appendedPosition += size;
+
+            if (syncMode == SyncMode.COMMIT) {
+                dataAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            final ByteBuffer batch;
+            final long batchPosition;
+
+            lock.lock();
+            try {
+                if (syncMode != SyncMode.COMMIT && !flushRequested && !closed) {
+                    dataAvailable.await(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+
+                while (active.position() == 0) {
+                    if (closed) {
+                        return;
+                    }
+
+                    if (syncMode == SyncMode.COMMIT) {
+                        dataAvailable.await();
+                    } else {
+                        dataAvailable.await(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                    }
+                }
+
+                flushRequested = false;
+                batch = active;
+                active = spare;
+                spare = batch;
+                batchPosition = appendedPosition;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            final long startTime = System.nanoTime();
+            try {
+                synchronized (ioLock) {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        segment.write(batch);
+                    }
+
+                    if (syncMode != SyncMode.NONE) {
+                        segment.force(false);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Unable to write journal, rejecting further writes", e);
+                lock.lock();
+                try {
+                    failure = e;
+                    durable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            SYNC_TIMER.record(System.nanoTime() - startTime);
+
+            batch.clear();
+            lock.lock();
+            try {
+                durablePosition = batchPosition;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static long readSnapshot(final Path file, final Consumer<Todo> onPut) throws IOException {
+        final CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE), crc))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Unsupported snapshot format: " + file);
+            }
+
+            final int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            in.readLong();
+
+            long count = 0;
+            while (in.readBoolean()) {
+                onPut.accept(TodoRecords.readTodo(in));
+                count++;
+            }
+
+            final long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+
+            return count;
+        }
+    }
+
+    private static long replaySegment(final Path file, final Consumer<Todo> onPut, final Consumer<UUID> onDelete) throws IOException {
+        long count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE))) {
+            while (true) {
+                final byte[] payload;
+                try {
+                    final int length = in.readInt();
+                    final int checksum = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        logger.warn("Ignoring corrupt tail of {} after {} records", file, count);
+                        break;
+                    }
+
+                    payload = new byte[length];
+                    in.readFully(payload);
+
+                    final CRC32 crc = new CRC32();
+                    crc.update(payload, 0, payload.length);
+                    if ((int) crc.getValue() != checksum) {
+                        logger.warn("Ignoring corrupt tail of {} after {} records", file, count);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    // A clean end of segment, or a record torn by a crash that was therefore never acknowledged
+                    break;
+                }
+
+                final DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                final byte type = record.readByte();
+                if (type == TodoRecords.PUT) {
+                    onPut.accept(TodoRecords.readTodo(record));
+                } else if (type == TodoRecords.DELETE) {
+                    onDelete.accept(TodoRecords.readId(record));
+                } else {
+                    throw new IOException("Unknown record type " + type + " in " + file);
+                }
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private FileChannel openSegment(final long number) throws IOException {
+        final FileChannel channel = FileChannel.open(file(SEGMENT_PREFIX, number, SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        syncDirectory();
+        return channel;
+    }
+
+    private Path file(final String prefix, final long number, final String suffix) {
+        return directory.resolve(String.format("%s%016d%s", prefix, number, suffix));
+    }
+
+    private List<Long> listFiles(final String prefix, final String suffix) throws IOException {
+        final List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file {}", file);
+                }
+            }
+        }
+
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private void deleteFiles(final String suffix) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Makes file creations and renames in the directory durable; not every platform allows opening a directory
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Unable to sync directory {}", directory, e);
+        }
+    }
+}
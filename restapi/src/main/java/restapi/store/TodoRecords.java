@@ -0,0 +1,94 @@
+package restapi.store;
+
+import restapi.model.Todo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Binary encoding of Todos shared by the journal and the snapshots. Ids are written as two longs, and strings as a
+ * length followed by their UTF-8 bytes, with a length of -1 standing for null.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoRecords {
+    public final static byte PUT = 1;
+    public final static byte DELETE = 2;
+
+    public static byte[] encodePut(final Todo todo) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(PUT);
+            writeTodo(out, todo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    public static byte[] encodeDelete(final UUID id) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DELETE);
+            writeId(out, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    public static void writeTodo(final DataOutput out, final Todo todo) throws IOException {
+        writeId(out, todo.getId());
+        writeString(out, todo.getTitle());
+        writeString(out, todo.getDescription());
+        out.writeBoolean(todo.isDone());
+    }
+
+    public static Todo readTodo(final DataInput in) throws IOException {
+        final Todo todo = new Todo(readId(in));
+        todo.setTitle(readString(in));
+        todo.setDescription(readString(in));
+        todo.setDone(in.readBoolean());
+        return todo;
+    }
+
+    public static void writeId(final DataOutput out, final UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    public static UUID readId(final DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    public static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
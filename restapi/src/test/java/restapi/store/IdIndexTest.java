@@ -0,0 +1,166 @@
+package restapi.store;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives IdIndex with random puts, overwrites and removes and checks every answer against a HashMap. Part of the
+ * ids share one hash, so they all start probing from the same slot and removals have to shift whole clusters back.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class IdIndexTest {
+    private final static int OPERATIONS = 200_000;
+
+    @Test
+    public void matchesHashMapUnderRandomOperations() {
+        for (long seed = 0; seed < 10; seed++) {
+            runRandomOperations(seed);
+        }
+    }
+
+    @Test
+    public void growsAndShrinksBackToEmpty() {
+        final IdIndex index = new IdIndex(0);
+        final int initialCapacity = index.capacity();
+        final List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            final UUID id = UUID.randomUUID();
+            ids.add(id);
+            assertEquals(IdIndex.ABSENT, index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), i));
+        }
+
+        assertEquals(ids.size(), index.size());
+        assertTrue(index.capacity() > initialCapacity);
+        assertTrue(index.size() <= index.capacity() * 0.6);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, index.get(ids.get(i).getMostSignificantBits(), ids.get(i).getLeastSignificantBits()));
+        }
+
+        Collections.shuffle(ids, new Random(1));
+        for (UUID id : ids) {
+            assertTrue(index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits()) >= 0);
+        }
+        assertEquals(0, index.size());
+        for (int slot = 0; slot < index.capacity(); slot++) {
+            assertFalse(index.isOccupied(slot));
+        }
+    }
+
+    // Every home slot is tried so that some clusters wrap around the end of the table
+    @Test
+    public void removesFromCollidingClusters() {
+        for (long hash = 0; hash < 64; hash++) {
+            final Random random = new Random(hash);
+            final IdIndex index = new IdIndex(0);
+            final Map<UUID, Long> oracle = new HashMap<>();
+
+            for (int i = 0; i < 9; i++) {
+                final UUID id = colliding(hash, random.nextLong());
+                index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), i);
+                oracle.put(id, (long) i);
+                final UUID other = UUID.randomUUID();
+                index.put(other.getMostSignificantBits(), other.getLeastSignificantBits(), 100 + i);
+                oracle.put(other, 100L + i);
+            }
+            assertContents("hash " + hash, oracle, index);
+
+            final List<UUID> ids = new ArrayList<>(oracle.keySet());
+            Collections.shuffle(ids, random);
+            for (UUID id : ids) {
+                assertEquals((long) oracle.remove(id), index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+                assertContents("hash " + hash, oracle, index);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeValues() {
+        new IdIndex(0).put(1, 2, -5);
+    }
+
+    @Test
+    public void clearEmptiesTheIndex() {
+        final IdIndex index = new IdIndex(1000);
+        index.put(1, 2, 3);
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(IdIndex.ABSENT, index.get(1, 2));
+    }
+
+    private static void runRandomOperations(final long seed) {
+        final Random random = new Random(seed);
+        final String message = "seed " + seed;
+        final IdIndex index = new IdIndex(0);
+        final Map<UUID, Long> oracle = new HashMap<>();
+
+        // A bounded pool keeps operations hitting ids that are present, with a third of them sharing one hash
+        final List<UUID> pool = new ArrayList<>();
+        final long sharedHash = random.nextLong();
+        for (int i = 0; i < 3000; i++) {
+            pool.add((i % 3 == 0) ? colliding(sharedHash, random.nextLong()) : new UUID(random.nextLong(), random.nextLong()));
+        }
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            final UUID id = pool.get(random.nextInt(pool.size()));
+            final long msb = id.getMostSignificantBits();
+            final long lsb = id.getLeastSignificantBits();
+
+            // Biased towards puts early on and removes later, so the table both grows and drains
+            final int putPercent = (i < OPERATIONS / 2) ? 70 : 30;
+            final int roll = random.nextInt(100);
+            if (roll < putPercent) {
+                final long value = random.nextInt(Integer.MAX_VALUE);
+                assertEquals(message, valueOf(oracle.put(id, value)), index.put(msb, lsb, value));
+            } else if (roll < 90) {
+                assertEquals(message, valueOf(oracle.remove(id)), index.remove(msb, lsb));
+            } else {
+                assertEquals(message, valueOf(oracle.get(id)), index.get(msb, lsb));
+            }
+            assertEquals(message, oracle.size(), index.size());
+
+            if (i % 10_000 == 0) {
+                assertContents(message, oracle, index);
+            }
+        }
+
+        assertContents(message, oracle, index);
+    }
+
+    private static void assertContents(final String message, final Map<UUID, Long> oracle, final IdIndex index) {
+        assertEquals(message, oracle.size(), index.size());
+        for (Map.Entry<UUID, Long> entry : oracle.entrySet()) {
+            assertEquals(message, (long) entry.getValue(), index.get(entry.getKey().getMostSignificantBits(), entry.getKey().getLeastSignificantBits()));
+        }
+
+        int occupied = 0;
+        for (int slot = 0; slot < index.capacity(); slot++) {
+            if (index.isOccupied(slot)) {
+                occupied++;
+                assertEquals(message, valueOf(oracle.get(new UUID(index.msbAt(slot), index.lsbAt(slot)))), index.valueAt(slot));
+            }
+        }
+        assertEquals(message, oracle.size(), occupied);
+    }
+
+    // IdIndex hashes msb * 31 + lsb, so picking the lsb to match gives the same hash for any msb
+    private static UUID colliding(final long hash, final long msb) {
+        return new UUID(msb, hash - msb * 31);
+    }
+
+    private static long valueOf(final Long value) {
+        return (value == null) ? IdIndex.ABSENT : value;
+    }
+}
@@ -0,0 +1,360 @@
+package restapi.store;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import restapi.metrics.MetricsRegistry;
+import restapi.model.Todo;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes to a journal, "crashes" by copying its directory while it is still open, and checks what a new journal
+ * recovers from the copy: every committed record, nothing past a torn or corrupt tail, and the same state whether
+ * it starts from the segments alone or from a snapshot taken while writes were running.
+ *
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoJournalTest {
+    private final static int WRITERS = 8;
+    private final static int WRITES_PER_WRITER = 250;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<TodoJournal> journals = new ArrayList<>();
+
+    @After
+    public void tearDown() throws IOException {
+        for (TodoJournal journal : journals) {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void groupCommitMakesEveryCommittedWriteDurable() throws Exception {
+        final Path directory = folder.newFolder("journal").toPath();
+        final TodoJournal journal = open(directory, TodoJournal.SyncMode.COMMIT, new HashMap<>());
+        final long syncsBefore = syncCount();
+
+        final Map<UUID, Todo> committed = new ConcurrentSkipListMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                writers.add(executor.submit(() -> {
+                    for (int j = 0; j < WRITES_PER_WRITER; j++) {
+                        final Todo todo = todo("title " + j);
+                        journal.appendPut(todo);
+                        journal.commit();
+                        committed.put(todo.getId(), todo);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Concurrent commits must have shared forces rather than paying for one each
+        final long syncs = syncCount() - syncsBefore;
+        assertTrue("Expected fewer than " + committed.size() + " syncs but saw " + syncs, syncs < committed.size());
+
+        assertEquals(committed.size(), WRITERS * WRITES_PER_WRITER);
+        assertState(committed, recover(crash(directory)));
+    }
+
+    @Test
+    public void tornTailIsDroppedOnReplay() throws Exception {
+        final Path directory = folder.newFolder("journal").toPath();
+        final Map<UUID, Todo> expected = writeAndClose(directory, 10);
+
+        final Todo torn = todo("torn");
+        final TodoJournal journal = open(directory, TodoJournal.SyncMode.COMMIT, new HashMap<>());
+        journal.appendPut(torn);
+        journal.commit();
+        final Path crashed = crash(directory);
+
+        // Cut the last record short, as a crash in the middle of writing it would
+        final Path segment = lastSegment(crashed);
+        truncate(segment, Files.size(segment) - 3);
+
+        assertState(expected, recover(crashed));
+    }
+
+    @Test
+    public void corruptTailIsDroppedOnReplay() throws Exception {
+        final Path directory = folder.newFolder("journal").toPath();
+        final Map<UUID, Todo> expected = writeAndClose(directory, 10);
+
+        final TodoJournal journal = open(directory, TodoJournal.SyncMode.COMMIT, new HashMap<>());
+        journal.appendPut(todo("corrupt"));
+        journal.appendPut(todo("after corrupt"));
+        journal.commit();
+        final Path crashed = crash(directory);
+
+        // Flip a byte in the payload of the first of the two records, which also hides the one after it
+        final Path segment = lastSegment(crashed);
+        final byte[] bytes = Files.readAllBytes(segment);
+        final int secondRecordSize = 8 + TodoRecords.encodePut(todo("after corrupt")).length;
+        bytes[bytes.length - secondRecordSize - 1] ^= 0x5a;
+        Files.write(segment, bytes);
+
+        assertState(expected, recover(crashed));
+    }
+
+    @Test
+    public void garbageLengthIsTreatedAsCorruptTail() throws Exception {
+        final Path directory = folder.newFolder("journal").toPath();
+        final Map<UUID, Todo> expected = writeAndClose(directory, 10);
+
+        final Path segment = lastSegment(directory);
+        Files.write(segment, new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        assertState(expected, recover(directory));
+    }
+
+    @Test
+    public void snapshotAndLaterSegmentsAreRecoveredTogether() throws Exception {
+        final Path directory = folder.newFolder("journal").toPath();
+        final Map<UUID, Todo> state = new HashMap<>();
+        final TodoJournal journal = open(directory, TodoJournal.SyncMode.COMMIT, state);
+
+        final Todo kept = todo("kept");
+        final Todo updated = todo("updated");
+        final Todo deleted = todo("deleted");
+        for (Todo todo : Arrays.asList(kept, updated, deleted)) {
+            journal.appendPut(todo);
+            state.put(todo.getId(), todo);
+        }
+        journal.commit();
+
+        final long number = journal.rotate();
+        assertEquals(3, journal.writeSnapshot(number, new ArrayList<>(state.values())));
+        assertEquals(1, countFiles(directory, "wal-*.log"));
+        assertEquals(1, countFiles(directory, "snapshot-*.dat"));
+
+        final Todo changed = copy(updated);
+        changed.setDone(true);
+        journal.appendPut(changed);
+        state.put(changed.getId(), changed);
+        journal.appendDelete(deleted.getId());
+        state.remove(deleted.getId());
+        final Todo added = todo("added");
+        journal.appendPut(added);
+        state.put(added.getId(), added);
+        journal.commit();
+
+        final Map<UUID, Todo> recovered = recover(crash(directory));
+        assertState(state, recovered);
+        assertTrue(recovered.get(updated.getId()).isDone());
+        assertNull(recovered.get(deleted.getId()));
+    }
+
+    @Test
+    public void fuzzySnapshotTakenDuringWritesRecoversFinalState() throws Exception {
+        final Path directory = folder.newFolder("journal").toPath();
+        final ConcurrentSkipListMap<UUID, Todo> state = new ConcurrentSkipListMap<>();
+        final TodoJournal journal = open(directory, TodoJournal.SyncMode.BATCH, new HashMap<>());
+
+        // Writers append under the read lock, as the repositories do, so that rotate() sees no appends in flight
+        final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+        final List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(new Todo().getId());
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        final List<Future<?>> writers = new ArrayList<>();
+        try {
+            for (int i = 0; i < WRITERS; i++) {
+                final List<UUID> owned = ids.subList(i * ids.size() / WRITERS, (i + 1) * ids.size() / WRITERS);
+                writers.add(executor.submit(() -> {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        final UUID id = owned.get(random.nextInt(owned.size()));
+                        rotationLock.readLock().lock();
+                        try {
+                            if (random.nextInt(4) == 0) {
+                                state.remove(id);
+                                journal.appendDelete(id);
+                            } else {
+                                final Todo todo = new Todo(id);
+                                todo.setTitle("title " + random.nextInt());
+                                todo.setDone(random.nextBoolean());
+                                state.put(id, todo);
+                                journal.appendPut(todo);
+                            }
+                        } finally {
+                            rotationLock.readLock().unlock();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (int i = 0; i < 5; i++) {
+                Thread.sleep(20);
+                final long number;
+                rotationLock.writeLock().lock();
+                try {
+                    number = journal.rotate();
+                } finally {
+                    rotationLock.writeLock().unlock();
+                }
+
+                // Iterated while the writers keep going, so the snapshot is no single point in time
+                journal.writeSnapshot(number, state.values());
+            }
+
+            Thread.sleep(20);
+        } finally {
+            running.set(false);
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdownNow();
+        }
+
+        journal.sync();
+        assertEquals(1, countFiles(directory, "snapshot-*.dat"));
+        assertState(state, recover(crash(directory)));
+    }
+
+    private TodoJournal open(final Path directory, final TodoJournal.SyncMode syncMode, final Map<UUID, Todo> state) throws IOException {
+        final TodoJournal journal = new TodoJournal(directory, syncMode, 1);
+        journals.add(journal);
+        journal.recover(todo -> state.put(todo.getId(), todo), state::remove);
+        return journal;
+    }
+
+    private Map<UUID, Todo> writeAndClose(final Path directory, final int count) throws IOException {
+        final Map<UUID, Todo> state = new HashMap<>();
+        try (TodoJournal journal = new TodoJournal(directory, TodoJournal.SyncMode.COMMIT, 1)) {
+            journal.recover(todo -> state.put(todo.getId(), todo), state::remove);
+            for (int i = 0; i < count; i++) {
+                final Todo todo = todo("title " + i);
+                journal.appendPut(todo);
+                state.put(todo.getId(), todo);
+            }
+            journal.commit();
+        }
+
+        return state;
+    }
+
+    private Map<UUID, Todo> recover(final Path directory) throws IOException {
+        final Map<UUID, Todo> state = new HashMap<>();
+        open(directory, TodoJournal.SyncMode.COMMIT, state);
+        return state;
+    }
+
+    // Copies the files of a journal that is still open, which is all that a crash would leave behind
+    private Path crash(final Path directory) throws IOException {
+        final Path crashed = folder.newFolder().toPath();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.copy(file, crashed.resolve(file.getFileName()));
+            }
+        }
+
+        return crashed;
+    }
+
+    private static Path lastSegment(final Path directory) throws IOException {
+        Path last = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path file : files) {
+                if (Files.size(file) > 0 && (last == null || file.getFileName().toString().compareTo(last.getFileName().toString()) > 0)) {
+                    last = file;
+                }
+            }
+        }
+
+        return last;
+    }
+
+    private static void truncate(final Path file, final long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static int countFiles(final Path directory, final String glob) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static long syncCount() throws IOException {
+        final StringWriter writer = new StringWriter();
+        MetricsRegistry.DEFAULT.write(writer);
+        for (String line : writer.toString().split("\n")) {
+            if (line.startsWith("todo_journal_sync_seconds_count ")) {
+                return Long.parseLong(line.substring(line.indexOf(' ') + 1));
+            }
+        }
+
+        return 0;
+    }
+
+    private static void assertState(final Map<UUID, Todo> expected, final Map<UUID, Todo> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Todo todo : expected.values()) {
+            final Todo recovered = actual.get(todo.getId());
+            assertEquals(todo.getTitle(), recovered.getTitle());
+            assertEquals(todo.getDescription(), recovered.getDescription());
+            assertEquals(todo.isDone(), recovered.isDone());
+        }
+    }
+
+    private static Todo todo(final String title) {
+        final Todo todo = new Todo();
+        todo.setTitle(title);
+        todo.setDescription("description of " + title);
+        return todo;
+    }
+
+    private static Todo copy(final Todo todo) {
+        final Todo copy = new Todo(todo.getId());
+        copy.setTitle(todo.getTitle());
+        copy.setDescription(todo.getDescription());
+        copy.setDone(todo.isDone());
+        return copy;
+    }
+}
@@ -0,0 +1,63 @@
+package restapi.store;
+
+import org.junit.Test;
+import restapi.model.Todo;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Abhishek Gupta
+ *         https://github.com/abhigupta912
+ */
+public class TodoRecordsTest {
+
+    @Test
+    public void putRoundTripsEveryField() throws IOException {
+        final Todo todo = new Todo();
+        todo.setTitle("tïtle ✓");
+        todo.setDescription("");
+        todo.setDone(true);
+
+        final DataInputStream in = read(TodoRecords.encodePut(todo));
+        assertEquals(TodoRecords.PUT, in.readByte());
+        final Todo decoded = TodoRecords.readTodo(in);
+        assertEquals(todo.getId(), decoded.getId());
+        assertEquals(todo.getTitle(), decoded.getTitle());
+        assertEquals("", decoded.getDescription());
+        assertTrue(decoded.isDone());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void putKeepsNullsApartFromEmptyStrings() throws IOException {
+        final Todo todo = new Todo();
+
+        final DataInputStream in = read(TodoRecords.encodePut(todo));
+        in.readByte();
+        final Todo decoded = TodoRecords.readTodo(in);
+        assertNull(decoded.getTitle());
+        assertNull(decoded.getDescription());
+    }
+
+    @Test
+    public void deleteRoundTripsId() throws IOException {
+        final UUID id = new Todo().getId();
+
+        final byte[] record = TodoRecords.encodeDelete(id);
+        assertEquals(17, record.length);
+        final DataInputStream in = read(record);
+        assertEquals(TodoRecords.DELETE, in.readByte());
+        assertEquals(id, TodoRecords.readId(in));
+    }
+
+    private static DataInputStream read(final byte[] record) {
+        return new DataInputStream(new ByteArrayInputStream(record));
+    }
+}